@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package android.os;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmark stub of the Android class. Values are kept as references rather than flattened into
+ * bytes, so round trips measure the generated code and not a serializer.
+ */
+public final class Parcel {
+  private final List<Object> values = new ArrayList<Object>();
+  private int position;
+
+  private Parcel() {}
+
+  public static Parcel obtain() {
+    return new Parcel();
+  }
+
+  public void recycle() {
+    values.clear();
+    position = 0;
+  }
+
+  public int dataPosition() {
+    return position;
+  }
+
+  public void setDataPosition(int position) {
+    this.position = position;
+  }
+
+  public void writeValue(Object value) {
+    values.add(position++, value);
+  }
+
+  public Object readValue(ClassLoader loader) {
+    return values.get(position++);
+  }
+
+  public void writeByteArray(byte[] bytes) {
+    values.add(position++, bytes);
+  }
+
+  public byte[] createByteArray() {
+    return (byte[]) values.get(position++);
+  }
+}
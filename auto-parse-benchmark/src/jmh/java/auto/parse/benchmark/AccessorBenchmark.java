@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse.benchmark;
+
+import auto.parse.benchmark.ReflectiveMapper.ReflectivePerson;
+import auto.parse.benchmark.model.Person;
+import com.parse.ParseObject;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Single property reads and writes through the generated class, straight on a ParseObject, and
+ * through reflection.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AccessorBenchmark {
+  private Person person;
+  private ParseObject raw;
+  private ReflectivePerson reflective;
+
+  @Setup
+  public void setUp() throws Exception {
+    person = Fixtures.person();
+    raw = Fixtures.rawPerson(1);
+    reflective = Fixtures.reflectivePerson();
+  }
+
+  @Benchmark
+  public String getStringGenerated() {
+    return person.getName();
+  }
+
+  @Benchmark
+  public String getStringRaw() {
+    return raw.getString("name");
+  }
+
+  @Benchmark
+  public Object getStringReflective() throws Exception {
+    return Fixtures.PERSON_MAPPER.get(reflective, "name");
+  }
+
+  @Benchmark
+  public Long getLongGenerated() {
+    return person.getId();
+  }
+
+  @Benchmark
+  public long getLongRaw() {
+    return raw.getLong("id");
+  }
+
+  @Benchmark
+  public Object getListGenerated() {
+    return person.getFriends();
+  }
+
+  @Benchmark
+  public Person setStringGenerated() {
+    return person.setName("Grace");
+  }
+
+  @Benchmark
+  public ParseObject setStringRaw() {
+    raw.put("name", "Grace");
+    return raw;
+  }
+
+  @Benchmark
+  public ReflectivePerson setStringReflective() throws Exception {
+    Fixtures.PERSON_MAPPER.set(reflective, "name", "Grace");
+    return reflective;
+  }
+
+  @Benchmark
+  public String toStringGenerated() {
+    return person.toString();
+  }
+}
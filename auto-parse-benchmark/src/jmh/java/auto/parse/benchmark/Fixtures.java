@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse.benchmark;
+
+import auto.parse.benchmark.ReflectiveMapper.ReflectivePerson;
+import auto.parse.benchmark.model.Address;
+import auto.parse.benchmark.model.Person;
+import com.parse.ParseObject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** The objects every benchmark starts from, with the same data in each representation. */
+final class Fixtures {
+  private Fixtures() {}
+
+  static final ReflectiveMapper<ReflectivePerson> PERSON_MAPPER =
+      new ReflectiveMapper<ReflectivePerson>(ReflectivePerson.class);
+
+  static Person person() {
+    Map<String, Address> addresses = new HashMap<String, Address>();
+    addresses.put("home", Address.create(new byte[] {1, 2, 3, 4}, "Taipei"));
+    List<Person> friends = new ArrayList<Person>();
+    friends.add(Person.create("Grace", 2L, Collections.<String, Address>emptyMap(),
+        Collections.<Person>emptyList()));
+    return Person.create("Ada", 1L, addresses, friends);
+  }
+
+  /** A raw ParseObject as a query would return it, before any wrapping. */
+  static ParseObject rawPerson(int i) {
+    ParseObject object = new ParseObject("Person");
+    object.put("name", "Ada " + i);
+    object.put("id", (long) i);
+    object.put("addresses", new HashMap<String, Object>());
+    object.put("friends", Arrays.asList());
+    return object;
+  }
+
+  static List<ParseObject> rawPeople(int count) {
+    List<ParseObject> rows = new ArrayList<ParseObject>(count);
+    for (int i = 0; i < count; i++) {
+      rows.add(rawPerson(i));
+    }
+    return rows;
+  }
+
+  static ReflectivePerson reflectivePerson() throws ReflectiveOperationException {
+    return PERSON_MAPPER.load(rawPerson(1));
+  }
+}
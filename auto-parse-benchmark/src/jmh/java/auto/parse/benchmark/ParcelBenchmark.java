@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse.benchmark;
+
+import android.os.Parcel;
+import auto.parse.benchmark.ReflectiveMapper.ReflectivePerson;
+import auto.parse.benchmark.model.AutoParse_Person;
+import auto.parse.benchmark.model.Person;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** A write to a Parcel followed by a read back, through the generated CREATOR and reflection. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ParcelBenchmark {
+  private Person person;
+  private ReflectivePerson reflective;
+  private Parcel parcel;
+
+  @Setup
+  public void setUp() throws Exception {
+    person = Fixtures.person();
+    reflective = Fixtures.reflectivePerson();
+    parcel = Parcel.obtain();
+  }
+
+  @Benchmark
+  public Person roundTripGenerated() {
+    parcel.recycle();
+    person.writeToParcel(parcel, 0);
+    parcel.setDataPosition(0);
+    return AutoParse_Person.CREATOR.createFromParcel(parcel);
+  }
+
+  @Benchmark
+  public ReflectivePerson roundTripReflective() throws Exception {
+    parcel.recycle();
+    Fixtures.PERSON_MAPPER.writeToParcel(reflective, parcel);
+    parcel.setDataPosition(0);
+    return Fixtures.PERSON_MAPPER.createFromParcel(parcel);
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse.benchmark;
+
+import android.os.Parcel;
+import com.parse.ParseObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The reflective baseline: copies between a ParseObject and a plain object field by field through
+ * {@link Field}, the way runtime-reflection mappers such as simple-parse do. Fields are looked up
+ * once per class, as any sensible mapper would cache them.
+ */
+final class ReflectiveMapper<T> {
+  private final Class<T> type;
+  private final Field[] fields;
+  private final Map<String, Field> fieldsByName = new HashMap<String, Field>();
+
+  ReflectiveMapper(Class<T> type) {
+    this.type = type;
+    List<Field> fields = new ArrayList<Field>();
+    for (Field field : type.getDeclaredFields()) {
+      if (!Modifier.isStatic(field.getModifiers())) {
+        field.setAccessible(true);
+        fields.add(field);
+        fieldsByName.put(field.getName(), field);
+      }
+    }
+    this.fields = fields.toArray(new Field[fields.size()]);
+  }
+
+  T load(ParseObject parseObject) throws ReflectiveOperationException {
+    T object = type.newInstance();
+    for (Field field : fields) {
+      field.set(object, parseObject.get(field.getName()));
+    }
+    return object;
+  }
+
+  void store(T object, ParseObject parseObject) throws ReflectiveOperationException {
+    for (Field field : fields) {
+      parseObject.put(field.getName(), field.get(object));
+    }
+  }
+
+  void writeToParcel(T object, Parcel dest) throws ReflectiveOperationException {
+    for (Field field : fields) {
+      dest.writeValue(field.get(object));
+    }
+  }
+
+  T createFromParcel(Parcel in) throws ReflectiveOperationException {
+    T object = type.newInstance();
+    for (Field field : fields) {
+      field.set(object, in.readValue(type.getClassLoader()));
+    }
+    return object;
+  }
+
+  Object get(T object, String name) throws ReflectiveOperationException {
+    return fieldsByName.get(name).get(object);
+  }
+
+  void set(T object, String name, Object value) throws ReflectiveOperationException {
+    fieldsByName.get(name).set(object, value);
+  }
+
+  /** A plain object with the same properties as {@code Person}. */
+  static final class ReflectivePerson {
+    String name;
+    Long id;
+    Map<String, Object> addresses;
+    List<Object> friends;
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse.benchmark;
+
+import auto.parse.benchmark.model.AutoParse_Person;
+import auto.parse.benchmark.model.Person;
+import com.parse.ParseObject;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Turning a page of query results into model objects: wrapping each raw ParseObject in the
+ * generated class, against copying each one into a plain object through reflection.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WrappingBenchmark {
+  @Param({"1", "100"})
+  public int rows;
+
+  private List<ParseObject> page;
+
+  @Setup
+  public void setUp() {
+    page = Fixtures.rawPeople(rows);
+  }
+
+  @Benchmark
+  public void wrapGenerated(Blackhole blackhole) {
+    for (ParseObject row : page) {
+      blackhole.consume(AutoParse_Person.WRAPPER.wrap(row));
+    }
+  }
+
+  @Benchmark
+  public void wrapAndReadGenerated(Blackhole blackhole) {
+    for (ParseObject row : page) {
+      Person person = AutoParse_Person.WRAPPER.wrap(row);
+      blackhole.consume(person.getName());
+      blackhole.consume(person.getId());
+    }
+  }
+
+  @Benchmark
+  public void loadReflective(Blackhole blackhole) throws Exception {
+    for (ParseObject row : page) {
+      blackhole.consume(Fixtures.PERSON_MAPPER.load(row));
+    }
+  }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse.benchmark.model;
+
+import android.os.Parcelable;
+import auto.parse.AutoParse;
+import com.parse.ParseObject;
+
+/** The sample's {@code model2.Address}. */
+@AutoParse
+public abstract class Address extends ParseObject implements Parcelable {
+  public abstract byte[] getCoordinates();
+  public abstract Address setCoordinates(byte[] coordinates);
+  public abstract String getCityName();
+  public abstract Address setCityName(String name);
+
+  public static Address create(byte[] coordinates, String cityName) {
+    return new AutoParse_Address(coordinates, cityName);
+  }
+}
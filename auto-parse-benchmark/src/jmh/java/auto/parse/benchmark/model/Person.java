@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse.benchmark.model;
+
+import android.os.Parcelable;
+import auto.parse.AutoParse;
+import com.parse.ParseObject;
+import java.util.List;
+import java.util.Map;
+
+/** The sample's {@code model3.Person}. */
+@AutoParse
+public abstract class Person extends ParseObject implements Parcelable {
+  public static Person create(String name, Long id, Map<String, Address> addresses,
+      List<Person> friends) {
+    return new AutoParse_Person(name, id, addresses, friends);
+  }
+
+  public abstract String getName();
+  public abstract Person setName(String name);
+  public abstract Long getId();
+  public abstract Person setId(Long id);
+  public abstract Map<String, Address> getAddresses();
+  public abstract Person setAddresses(Map<String, Address> addresses);
+  public abstract List<Person> getFriends();
+  public abstract Person setFriends(List<Person> friends);
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.parse;
+
+/** Benchmark stub of the Parse SDK class. */
+@SuppressWarnings("serial")
+public class ParseException extends Exception {
+  private final int code;
+
+  public ParseException(int code, String message) {
+    super(message);
+    this.code = code;
+  }
+
+  public ParseException(Throwable cause) {
+    super(cause);
+    this.code = -1;
+  }
+
+  public int getCode() {
+    return code;
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.parse;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Benchmark stub of the Parse SDK class. Values live in a plain HashMap, which is close to what
+ * the real ParseObject does for reads of data that has already been fetched.
+ */
+public class ParseObject {
+  private final Map<String, Object> data = new HashMap<String, Object>();
+  private final String className;
+  private String objectId;
+
+  public ParseObject() {
+    ParseClassName name = getClass().getAnnotation(ParseClassName.class);
+    this.className = name != null ? name.value() : getClass().getSimpleName();
+  }
+
+  public ParseObject(String className) {
+    this.className = className;
+  }
+
+  public static ParseObject create(String className) {
+    return new ParseObject(className);
+  }
+
+  public static void registerSubclass(Class<? extends ParseObject> subclass) {}
+
+  public static <T extends ParseObject> void saveAll(List<T> objects) throws ParseException {}
+
+  public static <T extends ParseObject> List<T> fetchAll(List<T> objects) throws ParseException {
+    return objects;
+  }
+
+  public static <T extends ParseObject> List<T> fetchAllIfNeeded(List<T> objects)
+      throws ParseException {
+    return objects;
+  }
+
+  public String getClassName() {
+    return className;
+  }
+
+  public String getObjectId() {
+    return objectId;
+  }
+
+  public void setObjectId(String objectId) {
+    this.objectId = objectId;
+  }
+
+  public Date getCreatedAt() {
+    return null;
+  }
+
+  public boolean isDataAvailable() {
+    return true;
+  }
+
+  public void saveEventually() {}
+
+  public void put(String key, Object value) {
+    data.put(key, value);
+  }
+
+  public boolean containsKey(String key) {
+    return data.containsKey(key);
+  }
+
+  public Object get(String key) {
+    return data.get(key);
+  }
+
+  public boolean getBoolean(String key) {
+    Object value = data.get(key);
+    return value instanceof Boolean ? (Boolean) value : false;
+  }
+
+  public byte[] getBytes(String key) {
+    Object value = data.get(key);
+    return value instanceof byte[] ? (byte[]) value : null;
+  }
+
+  public Date getDate(String key) {
+    Object value = data.get(key);
+    return value instanceof Date ? (Date) value : null;
+  }
+
+  public double getDouble(String key) {
+    Number number = getNumber(key);
+    return number == null ? 0 : number.doubleValue();
+  }
+
+  public int getInt(String key) {
+    Number number = getNumber(key);
+    return number == null ? 0 : number.intValue();
+  }
+
+  public long getLong(String key) {
+    Number number = getNumber(key);
+    return number == null ? 0 : number.longValue();
+  }
+
+  public Number getNumber(String key) {
+    Object value = data.get(key);
+    return value instanceof Number ? (Number) value : null;
+  }
+
+  public JSONArray getJSONArray(String key) {
+    Object value = data.get(key);
+    return value instanceof JSONArray ? (JSONArray) value : null;
+  }
+
+  public JSONObject getJSONObject(String key) {
+    Object value = data.get(key);
+    return value instanceof JSONObject ? (JSONObject) value : null;
+  }
+
+  @SuppressWarnings("unchecked")
+  public <T> List<T> getList(String key) {
+    Object value = data.get(key);
+    return value instanceof List ? (List<T>) value : null;
+  }
+
+  @SuppressWarnings("unchecked")
+  public <V> Map<String, V> getMap(String key) {
+    Object value = data.get(key);
+    return value instanceof Map ? (Map<String, V>) value : null;
+  }
+
+  public <T extends ParseObject> ParseRelation<T> getRelation(String key) {
+    return new ParseRelation<T>();
+  }
+
+  public ParseFile getParseFile(String key) {
+    Object value = data.get(key);
+    return value instanceof ParseFile ? (ParseFile) value : null;
+  }
+
+  public ParseGeoPoint getParseGeoPoint(String key) {
+    Object value = data.get(key);
+    return value instanceof ParseGeoPoint ? (ParseGeoPoint) value : null;
+  }
+
+  public ParseObject getParseObject(String key) {
+    Object value = data.get(key);
+    return value instanceof ParseObject ? (ParseObject) value : null;
+  }
+
+  public ParseUser getParseUser(String key) {
+    Object value = data.get(key);
+    return value instanceof ParseUser ? (ParseUser) value : null;
+  }
+
+  public String getString(String key) {
+    Object value = data.get(key);
+    return value instanceof String ? (String) value : null;
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.parse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Benchmark stub of the Parse SDK class; queries are built but never run. */
+public class ParseQuery<T extends ParseObject> {
+  private final String className;
+  private final List<String> includes = new ArrayList<String>();
+
+  public ParseQuery(String className) {
+    this.className = className;
+  }
+
+  public static <T extends ParseObject> ParseQuery<T> getQuery(Class<T> subclass) {
+    ParseClassName name = subclass.getAnnotation(ParseClassName.class);
+    return new ParseQuery<T>(name != null ? name.value() : subclass.getSimpleName());
+  }
+
+  public static <T extends ParseObject> ParseQuery<T> getQuery(String className) {
+    return new ParseQuery<T>(className);
+  }
+
+  public String getClassName() {
+    return className;
+  }
+
+  public ParseQuery<T> include(String key) {
+    includes.add(key);
+    return this;
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse.jfr;
+
+import auto.parse.AutoParseMetrics;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Emits Java Flight Recorder events for saves, fetches, cursor pages, Parcel reads and writes, and
+ * save scheduler flushes. Putting this module on the classpath registers it as the
+ * {@link AutoParseMetrics} implementation, which turns the hooks in generated code on. Events
+ * are only built while a recording that enables them is running.
+ *
+ * <p>Each event begins when {@link #begin} is called for its operation and is committed by the
+ * hook that reports it, so it spans the operation on the JFR timeline. An event whose recording
+ * started while its operation was already running is dropped.
+ */
+public class JfrMetrics extends AutoParseMetrics {
+  @Name("auto.parse.Save")
+  @Label("Save")
+  @Category("AutoParse")
+  static class SaveEvent extends Event {
+    @Label("Class") String className;
+    @Label("Object Id") String objectId;
+    @Label("Objects") int objects;
+    @Label("Payload Size") @DataAmount int bytes;
+    @Label("Success") boolean success;
+  }
+
+  @Name("auto.parse.Fetch")
+  @Label("Fetch")
+  @Category("AutoParse")
+  static class FetchEvent extends Event {
+    @Label("Class") String className;
+    @Label("Object Id") String objectId;
+    @Label("Objects") int objects;
+    @Label("Payload Size") @DataAmount int bytes;
+    @Label("Success") boolean success;
+  }
+
+  @Name("auto.parse.QueryPage")
+  @Label("Query Page")
+  @Category("AutoParse")
+  static class QueryPageEvent extends Event {
+    @Label("Class") String className;
+    @Label("Rows") int rows;
+    @Label("Payload Size") @DataAmount int bytes;
+  }
+
+  @Name("auto.parse.Parcel")
+  @Label("Parcel")
+  @Category("AutoParse")
+  static class ParcelEvent extends Event {
+    @Label("Class") String className;
+    @Label("Object Id") String objectId;
+    @Label("Write") boolean write;
+    @Label("Payload Size") @DataAmount int bytes;
+  }
+
+  @Name("auto.parse.Flush")
+  @Label("Save Scheduler Flush")
+  @Category("AutoParse")
+  static class FlushEvent extends Event {
+    @Label("Objects") int objects;
+    @Label("Payload Size") @DataAmount int bytes;
+    @Label("Success") boolean success;
+  }
+
+  private static final EventType SAVE = EventType.getEventType(SaveEvent.class);
+  private static final EventType FETCH = EventType.getEventType(FetchEvent.class);
+  private static final EventType QUERY_PAGE = EventType.getEventType(QueryPageEvent.class);
+  private static final EventType PARCEL = EventType.getEventType(ParcelEvent.class);
+  private static final EventType FLUSH = EventType.getEventType(FlushEvent.class);
+
+  @Override public Object begin(Operation operation) {
+    Event event;
+    switch (operation) {
+      case SAVE:
+        event = SAVE.isEnabled() ? new SaveEvent() : null;
+        break;
+      case FETCH:
+        event = FETCH.isEnabled() ? new FetchEvent() : null;
+        break;
+      case QUERY_PAGE:
+        event = QUERY_PAGE.isEnabled() ? new QueryPageEvent() : null;
+        break;
+      case PARCEL:
+        event = PARCEL.isEnabled() ? new ParcelEvent() : null;
+        break;
+      case FLUSH:
+        event = FLUSH.isEnabled() ? new FlushEvent() : null;
+        break;
+      default:
+        event = null;
+    }
+    if (event != null) {
+      event.begin();
+    }
+    return event;
+  }
+
+  @Override public void onSave(Object begun, String className, String objectId, int objects,
+      int bytes, long durationNanos, boolean success) {
+    if (!(begun instanceof SaveEvent)) {
+      return;
+    }
+    SaveEvent event = (SaveEvent) begun;
+    event.className = className;
+    event.objectId = objectId;
+    event.objects = objects;
+    event.bytes = bytes;
+    event.success = success;
+    event.commit();
+  }
+
+  @Override public void onFetch(Object begun, String className, String objectId, int objects,
+      int bytes, long durationNanos, boolean success) {
+    if (!(begun instanceof FetchEvent)) {
+      return;
+    }
+    FetchEvent event = (FetchEvent) begun;
+    event.className = className;
+    event.objectId = objectId;
+    event.objects = objects;
+    event.bytes = bytes;
+    event.success = success;
+    event.commit();
+  }
+
+  @Override public void onQueryPage(Object begun, String className, int rows, int bytes,
+      long durationNanos) {
+    if (!(begun instanceof QueryPageEvent)) {
+      return;
+    }
+    QueryPageEvent event = (QueryPageEvent) begun;
+    event.className = className;
+    event.rows = rows;
+    event.bytes = bytes;
+    event.commit();
+  }
+
+  @Override public void onParcel(Object begun, String className, String objectId,
+      boolean write, int bytes, long durationNanos) {
+    if (!(begun instanceof ParcelEvent)) {
+      return;
+    }
+    ParcelEvent event = (ParcelEvent) begun;
+    event.className = className;
+    event.objectId = objectId;
+    event.write = write;
+    event.bytes = bytes;
+    event.commit();
+  }
+
+  @Override public void onFlush(Object begun, int objects, int bytes, long durationNanos,
+      boolean success) {
+    if (!(begun instanceof FlushEvent)) {
+      return;
+    }
+    FlushEvent event = (FlushEvent) begun;
+    event.objects = objects;
+    event.bytes = bytes;
+    event.success = success;
+    event.commit();
+  }
+}
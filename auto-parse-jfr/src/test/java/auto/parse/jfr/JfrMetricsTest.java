@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse.jfr;
+
+import auto.parse.AutoParseMetrics;
+import java.io.File;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import junit.framework.TestCase;
+
+public class JfrMetricsTest extends TestCase {
+  public void testRegisteredAsService() {
+    assertTrue(AutoParseMetrics.ENABLED);
+    assertTrue(AutoParseMetrics.get() instanceof JfrMetrics);
+  }
+
+  public void testEventsAreRecorded() throws Exception {
+    JfrMetrics metrics = new JfrMetrics();
+    // Nothing is recorded, or even built, before a recording starts.
+    assertNull(metrics.begin(AutoParseMetrics.Operation.SAVE));
+
+    Recording recording = new Recording();
+    recording.disable("auto.parse.Fetch");
+    recording.start();
+    Object save = metrics.begin(AutoParseMetrics.Operation.SAVE);
+    Thread.sleep(20);
+    metrics.onSave(save, "Person", "b", 1, 300, 20000000, true);
+    Object parcel = metrics.begin(AutoParseMetrics.Operation.PARCEL);
+    metrics.onParcel(parcel, "Person", "b", true, 128, 500);
+    Object fetch = metrics.begin(AutoParseMetrics.Operation.FETCH);
+    assertNull(fetch);
+    metrics.onFetch(fetch, "Person", null, 3, 0, 2000, false);
+    recording.stop();
+
+    File file = File.createTempFile("auto-parse", ".jfr");
+    try {
+      recording.dump(file.toPath());
+      List<RecordedEvent> events = RecordingFile.readAllEvents(file.toPath());
+      assertEquals(2, events.size());
+      RecordedEvent saveEvent = events.get(0).getEventType().getName().equals("auto.parse.Save")
+          ? events.get(0) : events.get(1);
+      assertEquals("Person", saveEvent.getString("className"));
+      assertEquals("b", saveEvent.getString("objectId"));
+      assertEquals(300, saveEvent.getInt("bytes"));
+      // The event spans the operation, from begin() to the hook.
+      assertTrue(saveEvent.getDuration().toMillis() >= 20);
+    } finally {
+      recording.close();
+      file.delete();
+    }
+  }
+}
@@ -18,7 +18,7 @@ package auto.parse.processor;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Deque;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -77,7 +77,7 @@ final class AbstractMethodExtractor {
   // error if there are abstract methods with parameters, since the @AutoParse processor doesn't
   // know how to implement them in the concrete subclass it generates.
   Map<String, List<String>> abstractMethods(JavaTokenizer tokenizer, String packageName) {
-    Map<String, List<String>> abstractMethods = new HashMap<String, List<String>>();
+    Map<String, List<String>> abstractMethods = new LinkedHashMap<String, List<String>>();
     Deque<String> classStack = new ArrayDeque<String>();
     classStack.addLast(packageName);
     int braceDepth = 1;
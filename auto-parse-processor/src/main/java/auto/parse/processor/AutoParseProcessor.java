@@ -24,13 +24,18 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.Processor;
 import javax.annotation.processing.RoundEnvironment;
 import javax.annotation.processing.SupportedOptions;
@@ -44,13 +49,16 @@ import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.TypeParameterElement;
 import javax.lang.model.element.VariableElement;
 import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.ElementFilter;
 import javax.lang.model.util.Elements;
 import javax.lang.model.util.Types;
 import javax.tools.Diagnostic;
+import javax.tools.FileObject;
 import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
 
 import auto.parse.AutoParse;
 
@@ -62,15 +70,66 @@ import auto.parse.AutoParse;
  * @author Éamonn McManus
  */
 @AutoService(Processor.class)
-@SupportedOptions(EclipseHack.ENABLING_OPTION)
+@SupportedOptions({
+  EclipseHack.ENABLING_OPTION,
+  AutoParseProcessor.METRICS_OPTION,
+  AutoParseProcessor.SIZE_REPORT_OPTION,
+  AutoParseProcessor.MAX_METHODS_OPTION,
+  AutoParseProcessor.LINT_OPTION
+})
 public class AutoParseProcessor extends AbstractProcessor {
   private static final boolean SILENT = true;
 
+  /**
+   * Set this option to true to call the {@code auto.parse.AutoParseMetrics} hooks from the
+   * generated getters, setters and Parcel methods. They are left out by default, so that an app
+   * that doesn't collect metrics carries no trace of them.
+   */
+  static final String METRICS_OPTION = "auto.parse.metrics";
+
+  /**
+   * Set this option to true to write {@value CodeSizeReport#FILE_NAME} to the generated source
+   * directory, listing the bytes of source, methods and fields generated for each class and for
+   * the whole compilation.
+   */
+  static final String SIZE_REPORT_OPTION = "auto.parse.sizeReport";
+
+  /**
+   * Set this option to a number of methods to get a warning for every generated class that
+   * declares more, for example to keep an app away from the dex method limit.
+   */
+  static final String MAX_METHODS_OPTION = "auto.parse.maxMethods";
+
+  /**
+   * Set this option to true to get warnings, with suggested fixes, about property declarations
+   * that make the generated code slower. See {@link PerformanceLint}.
+   */
+  static final String LINT_OPTION = "auto.parse.lint";
+
+  private final CodeSizeReport sizeReport = new CodeSizeReport();
+
+  // Lookups that are shared by every class in a round, such as the TypeMirror of Parcelable and
+  // the classes that List<Person> references. Elements from one round are not guaranteed to be
+  // valid in the next, so both are cleared at the start of each round.
+  private final Map<String, TypeMirror> typeMirrors = new HashMap<String, TypeMirror>();
+  private final Map<String, Set<TypeMirror>> referencedTypes =
+      new HashMap<String, Set<TypeMirror>>();
+
+  private EclipseHack eclipseHack;
+
   public AutoParseProcessor() {}
 
+  @Override
+  public synchronized void init(ProcessingEnvironment processingEnv) {
+    super.init(processingEnv);
+    eclipseHack = new EclipseHack(processingEnv);
+  }
+
   @Override
   public Set<String> getSupportedAnnotationTypes() {
-    return Collections.singleton(AutoParse.class.getName());
+    return new LinkedHashSet<String>(Arrays.asList(
+        AutoParse.class.getName(), AutoParse.Compressed.class.getCanonicalName(),
+        AutoParse.Interned.class.getCanonicalName(), AutoParse.Document.class.getCanonicalName()));
   }
 
   @Override
@@ -110,9 +169,14 @@ public class AutoParseProcessor extends AbstractProcessor {
 
   @Override
   public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
-    boolean claimed = (annotations.size() == 1
-        && annotations.iterator().next().getQualifiedName().toString().equals(
-            AutoParse.class.getName()));
+    if (roundEnv.processingOver()) {
+      writeSizeReport();
+    }
+    boolean claimed = !annotations.isEmpty();
+    for (TypeElement annotation : annotations) {
+      claimed &= getSupportedAnnotationTypes().contains(
+          annotation.getQualifiedName().toString());
+    }
     if (claimed) {
       process(roundEnv);
       return true;
@@ -122,6 +186,9 @@ public class AutoParseProcessor extends AbstractProcessor {
   }
 
   private void process(RoundEnvironment roundEnv) {
+    typeMirrors.clear();
+    referencedTypes.clear();
+    eclipseHack.clearCache();
     Collection<? extends Element> annotatedElements =
         roundEnv.getElementsAnnotatedWith(AutoParse.class);
     Collection<? extends TypeElement> types = ElementFilter.typesIn(annotatedElements);
@@ -135,6 +202,16 @@ public class AutoParseProcessor extends AbstractProcessor {
         reportError("@AutoParse processor threw an exception: " + e, type);
       }
     }
+    for (TypeElement type
+        : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(AutoParse.Document.class))) {
+      try {
+        processDocument(type);
+      } catch (CompileException e) {
+        // We abandoned this type, but continue with the next.
+      } catch (RuntimeException e) {
+        reportError("@AutoParse processor threw an exception: " + e, type);
+      }
+    }
   }
 
   private String generatedClassName(TypeElement type, String prefix) {
@@ -152,6 +229,10 @@ public class AutoParseProcessor extends AbstractProcessor {
     return generatedClassName(type, "AutoParse_");
   }
 
+  private String generatedDocumentName(TypeElement type) {
+    return generatedClassName(type, "AutoParseDocument_");
+  }
+
   private static String simpleNameOf(String s) {
     if (s.contains(".")) {
       return s.substring(s.lastIndexOf('.') + 1);
@@ -214,6 +295,16 @@ public class AutoParseProcessor extends AbstractProcessor {
 
     "    ParseObject parseObject;\n",
 
+    "$[enumCodecs:p||    private static final auto.parse.AutoParseEnumCodec<$[p.enumType]> $[p.enumCodec] =\n" +
+    "            auto.parse.AutoParseEnumCodec.of($[p.enumType].class);\n\n]" +
+
+    "$[geoIndexes:p||    private static volatile auto.parse.AutoParseGeoIndex<$[origclass]> " +
+                        "$[p.geoIndex];\n\n]" +
+    "$[geoIndexes?    private boolean _constructing;\n\n]" +
+
+    "$[cachedProperties:p||    private Object _$[p.getField]Stored;\n" +
+    "    private $[p.cachedType] _$[p.getField];\n\n]" +
+
     // Constructor
     "    public $[subclass]() {",
     "        this.parseObject = this;",
@@ -225,7 +316,11 @@ public class AutoParseProcessor extends AbstractProcessor {
 
     "    public $[subclass](\n            $[getters:p|,\n            |$[p.type] $[p.getField]]) {",
     "        this();",
+    // The setters don't put a copy made from a Parcel, or an object that isn't set up yet, into
+    // the geo indexes.
+    "$[geoIndexes?        _constructing = true;\n]" +
     "$[setters:p|\n|        $[p]($[p.getField]);]",
+    "$[geoIndexes?        _constructing = false;\n]" +
     "    }\n",
 
     "    private Object _get(String key, Object defValue) {",
@@ -291,6 +386,7 @@ public class AutoParseProcessor extends AbstractProcessor {
     "        return parseObject.getParseGeoPoint(key);",
     "    }\n",
 
+    "    @SuppressWarnings(\"unchecked\")",
     "    private <T extends ParseObject> T _get(String key, T defValue) {",
     "        return (T) parseObject.getParseObject(key);",
     "    }\n",
@@ -366,17 +462,129 @@ public class AutoParseProcessor extends AbstractProcessor {
     //"        if (String.class.equals($[p.type].class)) {",
     //"            return parseObject.getString(key);",
     //"        }]]",
-    "        return _get(\"$[p.getField]\", $[p.getDefalutValue]);",
+    "$[metrics?        if (auto.parse.AutoParseMetrics.ENABLED) {",
+    "            auto.parse.AutoParseMetrics.get().onRead(\"$[origclass]\", \"$[p.getField]\");",
+    "        }",
+    "]" +
+    "$[p.viewClass?[        Object _stored = parseObject.get(\"$[p.getField]\");",
+    "        if (auto.parse.AutoParseNPlusOneDetector.isEnabled()) {",
+    "            auto.parse.AutoParseNPlusOneDetector.onRead(parseObject, \"$[p.getField]\", _stored);",
+    "        }",
+    "        if (_stored != _$[p.getField]Stored) {",
+    "            _$[p.getField] = $[p.viewClass].view(",
+    "                    parseObject, \"$[p.getField]\", _stored, $[p.viewWrapper]);",
+    "            _$[p.getField]Stored = _stored;",
+    "        }",
+    "        return _$[p.getField];][" +
+    "$[p.pointer?[        $[p.type] _value = _get(\"$[p.getField]\", $[p.getDefalutValue]);",
+    "        if (auto.parse.AutoParseNPlusOneDetector.isEnabled()) {",
+    "            auto.parse.AutoParseNPlusOneDetector.onRead(parseObject, \"$[p.getField]\", _value);",
+    "        }",
+    "        return _value;][" +
+    "$[p.enumType?[        return $[p.enumCodec].decode(parseObject.get(\"$[p.getField]\"), " +
+                                "$[p.enumDefault]);][" +
+    "$[p.primitiveArrayType?[        List<?> _list = parseObject.getList(\"$[p.getField]\");",
+    "        if (_list != _$[p.getField]Stored",
+    "                || (_list != null && _list.size() != _$[p.getField].length)) {",
+    "            _$[p.getField] = auto.parse.AutoParseArrays.toArray(_list, _$[p.getField]);",
+    "            _$[p.getField]Stored = _list;",
+    "        }",
+    "        return _$[p.getField];][" +
+    "$[p.compressed?[        Object _stored = parseObject.get(\"$[p.getField]\");",
+    "        if (_stored != _$[p.getField]Stored) {",
+    "            _$[p.getField] = $[p.interned?auto.parse.AutoParseInterner.intern(]" +
+                        "auto.parse.AutoParseCompression.inflate(_stored, _$[p.getField])" +
+                        "$[p.interned?)];",
+    "            _$[p.getField]Stored = _stored;",
+    "        }",
+    "        return _$[p.getField];][" +
+    "$[p.interned?[        String _stored = parseObject.getString(\"$[p.getField]\");",
+    "        if (_stored != _$[p.getField]Stored) {",
+    "            _$[p.getField] = auto.parse.AutoParseInterner.intern(_stored);",
+    "            _$[p.getField]Stored = _stored;",
+    "        }",
+    "        return _$[p.getField];][" +
+    "        return _get(\"$[p.getField]\", $[p.getDefalutValue]);]]]]]]]]]]]]",
     "    }]",
 
     // Property setters
     "$[setters:p|\n|\n    @Override",
     "    $[p.access]$[origclass] $[p]($[p.getTypeArgs]) {",
-    "        if ($[p.getArgs] == null) return this;",
-    "        put(\"$[p.getField]\", $[p.getArgs]);",
+    "$[p.referenceArg?        if ($[p.getArgs] == null) return this;\n]" +
+    "$[metrics?        if (auto.parse.AutoParseMetrics.ENABLED) {",
+    "            auto.parse.AutoParseMetrics.get().onWrite(\"$[origclass]\", \"$[p.getField]\");",
+    "        }",
+    "]" +
+    "$[p.primitiveArrayType?[        List<?> _list = auto.parse.AutoParseArrays.asList($[p.getArgs]);",
+    "        parseObject.put(\"$[p.getField]\", _list);",
+    "        _$[p.getField] = $[p.getArgs].clone();",
+    "        _$[p.getField]Stored = _list;\n][" +
+    "$[p.compressed?[        Object _stored = auto.parse.AutoParseCompression.deflate(" +
+                                "$[p.getArgs], $[p.compressionThreshold]);",
+    "        parseObject.put(\"$[p.getField]\", _stored);",
+    "        _$[p.getField] = $[p.interned?[auto.parse.AutoParseInterner.intern($[p.getArgs])][" +
+                            "$[p.getArgs]$[p.byteArray?.clone()]]];",
+    "        _$[p.getField]Stored = _stored;\n][" +
+    "$[p.viewClass?[        parseObject.put(\"$[p.getField]\",",
+    "                $[p.viewClass].toStored($[p.getArgs]$[p.document?[][, $[p.viewWrapper]]]));\n][" +
+    "        parseObject.put(\"$[p.getField]\", " +
+          "$[p.enumType?[$[p.enumCodec].encode($[p.getArgs])][" +
+          "$[p.interned?[auto.parse.AutoParseInterner.intern($[p.getArgs])][$[p.getArgs]]]]]);\n" +
+    "]]]]]]" +
+    "$[p.geoIndex?[        auto.parse.AutoParseGeoIndex<$[origclass]> _index = $[p.geoIndex];",
+    "        if (_index != null && !_constructing) {",
+    "            _index.put(this, $[p.getArgs]);",
+    "        }\n][]]" +
+    "        return this;",
+    "    }]",
+
+    // Epoch-millis accessors for Date properties
+    "$[dateMillis:p||\n",
+    "    public long $[p]Millis() {",
+    "$[metrics?        if (auto.parse.AutoParseMetrics.ENABLED) {",
+    "            auto.parse.AutoParseMetrics.get().onRead(\"$[origclass]\", \"$[p.getField]\");",
+    "        }",
+    "]" +
+    "        Date date = parseObject.getDate(\"$[p.getField]\");",
+    "        return date != null ? date.getTime() : 0L;",
+    "    }",
+    "",
+    "    public $[origclass] set$[p.capitalizedField]Millis(long millis) {",
+    "$[metrics?        if (auto.parse.AutoParseMetrics.ENABLED) {",
+    "            auto.parse.AutoParseMetrics.get().onWrite(\"$[origclass]\", \"$[p.getField]\");",
+    "        }",
+    "]" +
+    "        parseObject.put(\"$[p.getField]\", new Date(millis));",
     "        return this;",
     "    }]",
 
+    // Read-only views of byte[] properties
+    "$[byteBuffers:p||\n",
+    "    public java.nio.ByteBuffer $[p]Buffer() {",
+    "        byte[] bytes = $[p]();",
+    "        return bytes != null ? java.nio.ByteBuffer.wrap(bytes).asReadOnlyBuffer() : null;",
+    "    }]",
+
+    // Spatial indexes for ParseGeoPoint properties
+    "$[geoIndexes:p||\n",
+    "    public static void set$[p.capitalizedField]Index(",
+    "            auto.parse.AutoParseGeoIndex<$[origclass]> index) {",
+    "        $[p.geoIndex] = index;",
+    "    }",
+    "",
+    "    public static void index$[p.capitalizedField](List<? extends $[origclass]> objects) {",
+    "        auto.parse.AutoParseGeoIndex<$[origclass]> _index = $[p.geoIndex];",
+    "        if (_index == null) {",
+    "            return;",
+    "        }",
+    "        List<com.parse.ParseGeoPoint> points =",
+    "                new java.util.ArrayList<com.parse.ParseGeoPoint>(objects.size());",
+    "        for ($[origclass] object : objects) {",
+    "            points.add(WRAPPER.unwrap(object).getParseGeoPoint(\"$[p.getField]\"));",
+    "        }",
+    "        _index.putAll(objects, points);",
+    "    }]",
+
     // toString()
     "$[toString?\n    @Override",
     "    public String toString() {",
@@ -390,6 +598,17 @@ public class AutoParseProcessor extends AbstractProcessor {
     "$[parcelable?\n\n",
     "    public static final android.os.Parcelable.Creator<$[origclass]> CREATOR = new android.os.Parcelable.Creator<$[origclass]>() {",
     "        @Override public $[origclass] createFromParcel(android.os.Parcel in) {",
+    "$[metrics?            if (auto.parse.AutoParseMetrics.ENABLED) {",
+    "                auto.parse.AutoParseMetrics metrics = auto.parse.AutoParseMetrics.get();",
+    "                Object begun = metrics.begin(auto.parse.AutoParseMetrics.Operation.PARCEL);",
+    "                long start = System.nanoTime();",
+    "                int position = in.dataPosition();",
+    "                $[origclass] object = new $[subclass](in);",
+    "                metrics.onParcel(begun, \"$[origclass]\", object.getObjectId(), false,",
+    "                        in.dataPosition() - position, System.nanoTime() - start);",
+    "                return object;",
+    "            }",
+    "]" +
     "            return new $[subclass](in);",
     "        }",
     "        @Override public $[origclass][] newArray(int size) {",
@@ -400,11 +619,32 @@ public class AutoParseProcessor extends AbstractProcessor {
     "    private final static java.lang.ClassLoader CL = $[subclass].class.getClassLoader();",
     "",
     "    private $[subclass](android.os.Parcel in) {",
-    "        this(\n            $[getters:p|,\n            |($[p.castType]) in.readValue(CL)]);",
+    "        this(\n            $[getters:p|,\n            |" +
+        "$[p.enumType?[$[p.enumCodec].decode(in.readValue(CL), null)][" +
+        "$[p.document?[$[p.viewWrapper].convert(in.readValue(CL))][" +
+        "$[p.byteArray?[in.createByteArray()][($[p.castType]) in.readValue(CL)]]]]]]]);",
     "    }",
     "",
     "    @Override public void writeToParcel(android.os.Parcel dest, int flags) {",
-    "$[getters:p||        dest.writeValue($[p]());\n]",
+    "$[metrics?        Object begun = null;",
+    "        long start = 0;",
+    "        int position = 0;",
+    "        if (auto.parse.AutoParseMetrics.ENABLED) {",
+    "            begun = auto.parse.AutoParseMetrics.get().begin(",
+    "                    auto.parse.AutoParseMetrics.Operation.PARCEL);",
+    "            start = System.nanoTime();",
+    "            position = dest.dataPosition();",
+    "        }",
+    "]" +
+    "$[getters:p||$[p.byteArray?[        dest.writeByteArray($[p]());\n][" +
+        "        dest.writeValue($[p.enumType?[$[p.enumCodec].encode($[p]())][" +
+        "$[p.document?[auto.parse.AutoParseDocument.toStored($[p]())][$[p]()]]]]);\n]]]" +
+    "$[metrics?        if (auto.parse.AutoParseMetrics.ENABLED) {",
+    "            auto.parse.AutoParseMetrics.get().onParcel(begun, \"$[origclass]\",",
+    "                    parseObject.getObjectId(), true, dest.dataPosition() - position,",
+    "                    System.nanoTime() - start);",
+    "        }",
+    "]" +
     "    }",
     "",
     "    @Override public int describeContents() {",
@@ -412,55 +652,255 @@ public class AutoParseProcessor extends AbstractProcessor {
     "    }",
     "",
     "    public static ParseQuery<$[origclass]> getQuery() {",
-    "        return ParseQuery.getQuery($[origclass].class);",
+    "        return $[includes?withIncludes(]ParseQuery.getQuery($[origclass].class)$[includes?)];",
     "    }",
     "",
     "    public static ParseQuery<$[subclass]> getAutoQuery() {",
-    "        return ParseQuery.getQuery($[subclass].class);",
+    "        return $[includes?withIncludes(]ParseQuery.getQuery($[subclass].class)$[includes?)];",
     "    }",
     "]",
 
+    // Wrapping
+    "    public static final auto.parse.AutoParseWrapper<$[origclass]> WRAPPER =",
+    "            new auto.parse.AutoParseWrapper<$[origclass]>() {",
+    "        @Override public $[origclass] wrap(ParseObject parseObject) {",
+    "            if (parseObject == null || parseObject instanceof $[origclass]) {",
+    "                return ($[origclass]) parseObject;",
+    "            }",
+    "            return new $[subclass](parseObject);",
+    "        }",
+    "        @Override public ParseObject unwrap($[origclass] object) {",
+    "            return object instanceof $[subclass] ? (($[subclass]) object).parseObject : object;",
+    "        }",
+    "    };" +
+
+    // Pointer prefetching, for classes that have pointers or whose queries include some
+    "$[parcelable?[$[includes?[\n\n" +
+    "    private static <T extends ParseObject> ParseQuery<T> withIncludes(ParseQuery<T> query) {",
+    "$[includes:i||        query.include(\"$[i]\");\n]" +
+    "        return query;",
+    "    }][]]][]]" +
+    "$[pointerKeys?[\n\n" +
+    "    public static int prefetchPointers(List<? extends $[origclass]> objects)",
+    "            throws com.parse.ParseException {",
+    "        List<ParseObject> parseObjects = new java.util.ArrayList<ParseObject>(objects.size());",
+    "        for ($[origclass] object : objects) {",
+    "            parseObjects.add(WRAPPER.unwrap(object));",
+    "        }",
+    "        return auto.parse.AutoParsePrefetcher.fetchPointers(",
+    "                parseObjects$[pointerKeys:k||, \"$[k]\"]);",
+    "    }][]]",
+
     "}"
     // CHECKSTYLE:ON
   );
   private static final Template template = Template.compile(TEMPLATE_STRING);
 
+  // The class generated for an @AutoParse.Document interface.
+  private static final String DOCUMENT_TEMPLATE_STRING = concatLines(
+    // CHECKSTYLE:OFF:OperatorWrap
+    "$[pkg?package $[pkg];\n]",
+    "$[imports:i||import $[i];\n]",
+    "public final class $[subclass] extends auto.parse.AutoParseDocument",
+    "        implements $[origclass] {",
+    "    public static final auto.parse.AutoParseDocument.Element<$[origclass]> ELEMENT =",
+    "            new auto.parse.AutoParseDocument.Element<$[origclass]>() {",
+    "        @Override public $[origclass] convert(Object stored) {",
+    "            return stored instanceof java.util.Map",
+    "                    ? new $[subclass]((java.util.Map<?, ?>) stored) : null;",
+    "        }",
+    "    };",
+    "$[properties:p||",
+    "    private boolean _$[p.field]Read;",
+    "    private $[p.type] _$[p.field];]",
+    "",
+    "    private $[subclass](java.util.Map<?, ?> source) {",
+    "        super(source);",
+    "    }",
+    "$[properties:p||",
+    "    @Override",
+    "    public $[p.type] $[p]() {",
+    "        if (!_$[p.field]Read) {",
+    "            _$[p.field] = $[p.read];",
+    "            _$[p.field]Read = true;",
+    "        }",
+    "        return _$[p.field];",
+    "    }\n]" +
+    "}"
+    // CHECKSTYLE:ON
+  );
+  private static final Template documentTemplate = Template.compile(DOCUMENT_TEMPLATE_STRING);
+
+  /** A getter of an {@code @AutoParse.Document} interface, with the expression that reads it. */
+  static class DocumentProperty {
+    private final String name;
+    private final String field;
+    private final String type;
+    private final String read;
+
+    DocumentProperty(ExecutableElement method, String type, String read) {
+      this.name = method.getSimpleName().toString();
+      this.field = Property.fieldOf(method);
+      this.type = type;
+      this.read = read;
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+
+    public String field() {
+      return field;
+    }
+
+    public String type() {
+      return type;
+    }
+
+    public String read() {
+      return read;
+    }
+  }
+
+  /**
+   * A getter or setter to implement, with every spelling of it that the template uses worked out
+   * once when the class is processed. The template refers to some of these several times per
+   * property, so the accessors below only read fields.
+   */
   static class Property {
     private final ExecutableElement method;
     private final String type;
     private final Map<String, Object> vars;
+    private final boolean pointer;
+    private final String name;
+    private final String field;
+    private final String capitalizedField;
+    private final String typeArgs;
+    private final String args;
+    private final String castType;
+    private final String defaultValue;
+    private final boolean primitive;
+    private final boolean referenceArg;
+    private final boolean nullable;
+    private final String access;
+    private final String enumType;
+    private final String enumCodec;
+    private final String geoIndex;
+    private final String primitiveArrayType;
+    private final boolean byteArray;
+    private final int compressionThreshold;
+    private final boolean interned;
+    private final String viewClass;
+    private final String viewWrapper;
+    private final String cachedType;
 
-    Property(ExecutableElement method, String type, Map<String, Object> vars) {
+    /**
+     * Creates the property for {@code method}. {@code compressionThreshold} is from the
+     * {@code @AutoParse.Compressed} annotation on the getter or setter of its field, or -1 if
+     * neither has one, and {@code interned} is whether either has {@code @AutoParse.Interned}.
+     * {@code viewWrapper} is the {@code WRAPPER} of the {@code @AutoParse} class
+     * whose instances a {@code Map<String, Foo>} or {@code List<Foo>} property holds, or an empty
+     * string.
+     */
+    Property(ExecutableElement method, String type, Map<String, Object> vars, boolean pointer,
+        int compressionThreshold, boolean interned, String viewWrapper) {
       this.method = method;
       this.type = type;
       this.vars = vars;
+      this.pointer = pointer;
+      this.name = method.getSimpleName().toString();
+      this.field = fieldOf(method);
+      this.capitalizedField = Character.toUpperCase(field.charAt(0)) + field.substring(1);
+      this.typeArgs = formalTypeArgsString(method, (TypeSimplifier) vars.get("typeSimplifier"));
+      this.args = formalArgsString(method);
+      TypeKind kind = method.getReturnType().getKind();
+      this.primitive = kind.isPrimitive();
+      // That wouldn't be necessary if we supported Java 7+. Oh well.
+      this.castType = primitive ? box(kind) : type;
+      // A boxed null still picks the primitive _get overload, like (Long) null for long.
+      this.defaultValue = args.isEmpty() ? "(" + castType + ") null" : args;
+      List<? extends VariableElement> parameters = method.getParameters();
+      this.referenceArg =
+          parameters.size() == 1 && !parameters.get(0).asType().getKind().isPrimitive();
+      this.nullable = hasNullableAnnotation(method);
+      this.access = accessOf(method);
+      TypeMirror valueType = parameters.size() == 1 && name.startsWith("set")
+          ? parameters.get(0).asType()
+          : method.getReturnType();
+      this.enumType = isEnum(valueType)
+          ? ((TypeSimplifier) vars.get("typeSimplifier")).simplify(valueType)
+          : "";
+      this.byteArray = valueType.getKind() == TypeKind.ARRAY
+          && ((ArrayType) valueType).getComponentType().getKind() == TypeKind.BYTE;
+      this.primitiveArrayType = isPrimitiveArray(valueType)
+          ? ((TypeSimplifier) vars.get("typeSimplifier")).simplify(valueType)
+          : "";
+      this.compressionThreshold = compressionThreshold;
+      this.interned = interned;
+      String compressedType = compressionThreshold < 0 && !interned
+          ? ""
+          : ((TypeSimplifier) vars.get("typeSimplifier")).simplify(valueType);
+      this.viewWrapper = viewWrapper;
+      if (viewWrapper.isEmpty()) {
+        this.viewClass = "";
+      } else if (holdsDocuments(valueType)) {
+        this.viewClass = "auto.parse.AutoParseDocument";
+      } else {
+        this.viewClass = ((DeclaredType) valueType).asElement().getSimpleName().contentEquals("Map")
+            ? "auto.parse.AutoParseMap"
+            : "auto.parse.AutoParseList";
+      }
+      if (!viewClass.isEmpty()) {
+        this.cachedType = ((TypeSimplifier) vars.get("typeSimplifier")).simplify(valueType);
+      } else {
+        this.cachedType = primitiveArrayType.isEmpty() ? compressedType : primitiveArrayType;
+      }
+      String constant =
+          field.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toUpperCase(Locale.ENGLISH);
+      this.enumCodec = constant + "_CODEC";
+      this.geoIndex = name.startsWith("set")
+          && valueType.toString().equals("com.parse.ParseGeoPoint") ? constant + "_INDEX" : "";
+    }
+
+    private static boolean isEnum(TypeMirror type) {
+      return type.getKind() == TypeKind.DECLARED
+          && ((DeclaredType) type).asElement().getKind() == ElementKind.ENUM;
+    }
+
+    /** The field that a getter or setter called {@code getFooBar} or {@code setFooBar} accesses. */
+    static String fieldOf(ExecutableElement method) {
+      String name = method.getSimpleName().toString();
+      if ((name.startsWith("get") || name.startsWith("set")) && name.length() > 3) {
+        name = name.substring(3);
+      }
+      return Character.toLowerCase(name.charAt(0)) + name.substring(1);
     }
 
     @Override
     public String toString() {
-      return method.getSimpleName().toString();
+      return name;
     }
 
     public String getField() {
-      String field = method.getSimpleName().toString().replaceFirst("^set", "")
-          .replaceFirst("^get", "");
-      return field.substring(0, 1).toLowerCase() + field.substring(1);
+      return field;
+    }
+
+    /** The field with its first letter in upper case, as in {@code getFooBar}. */
+    public String capitalizedField() {
+      return capitalizedField;
     }
 
     public String getTypeArgs() {
-      return formalTypeArgsString(method, (TypeSimplifier) vars.get("typeSimplifier"));
+      return typeArgs;
     }
 
     public String getArgs() {
-      return formalArgsString(method);
+      return args;
     }
 
     public String getDefalutValue() {
-        String defaultValue = formalArgsString(method);
-        if (defaultValue.isEmpty()) {
-            defaultValue = "(" + type + ") null";
-        }
-        return defaultValue;
+      return defaultValue;
     }
 
     TypeElement owner() {
@@ -471,12 +911,11 @@ public class AutoParseProcessor extends AbstractProcessor {
       return type;
     }
 
-    // That wouldn't be necessary if we supported Java 7+. Oh well.
     public String castType() {
-      return primitive() ? box(method.getReturnType().getKind()) : type();
+      return castType;
     }
 
-    private String box(TypeKind kind) {
+    private static String box(TypeKind kind) {
       switch(kind) {
         case BOOLEAN: return "Boolean";
         case BYTE: return "Byte";
@@ -492,14 +931,110 @@ public class AutoParseProcessor extends AbstractProcessor {
     }
 
     public boolean primitive() {
-      return method.getReturnType().getKind().isPrimitive();
+      return primitive;
+    }
+
+    /**
+     * The enum that this property holds, or an empty string if it doesn't hold an enum. Enums are
+     * stored through an {@code AutoParseEnumCodec} constant called {@link #enumCodec}.
+     */
+    public String enumType() {
+      return enumType;
+    }
+
+    /**
+     * The type of this property if it is an {@code int[]}, {@code long[]} or {@code double[]},
+     * which is stored as a list and decoded into an array that the generated class keeps until
+     * the list changes, or an empty string otherwise.
+     */
+    public String primitiveArrayType() {
+      return primitiveArrayType;
+    }
+
+    /** True if this property is stored deflated, see {@code AutoParse.Compressed}. */
+    public boolean compressed() {
+      return compressionThreshold >= 0;
+    }
+
+    public int compressionThreshold() {
+      return compressionThreshold;
+    }
+
+    /** True if this property's values are shared, see {@code AutoParse.Interned}. */
+    public boolean interned() {
+      return interned;
+    }
+
+    /**
+     * The type of the decoded value that the generated class keeps for this property, with the
+     * stored value it came from, or an empty string if it doesn't keep one. Primitive arrays and
+     * compressed values are kept.
+     */
+    public String cachedType() {
+      return cachedType;
+    }
+
+    /**
+     * The runtime class of the typed view that the getter returns and whose {@code toStored}
+     * method the setter calls, or an empty string if the property doesn't have one.
+     */
+    public String viewClass() {
+      return viewClass;
+    }
+
+    public String viewWrapper() {
+      return viewWrapper;
+    }
+
+    /** True if the value is an {@code @AutoParse.Document} or a list of them. */
+    public boolean document() {
+      return viewClass.equals("auto.parse.AutoParseDocument");
+    }
+
+    /** The name of the codec constant of an enum property, like HEIGHT_TYPE_CODEC. */
+    public String enumCodec() {
+      return enumCodec;
+    }
+
+    /**
+     * The name of the static field holding the {@code AutoParseGeoIndex} that the setter of a
+     * ParseGeoPoint property updates, like LOCATION_INDEX, or an empty string.
+     */
+    public String geoIndex() {
+      return geoIndex;
+    }
+
+    /** What an enum getter returns when the stored value is missing or not one of the constants. */
+    public String enumDefault() {
+      return args.isEmpty() ? "null" : args;
+    }
+
+    /** True if this is a setter whose argument is a reference, and so can be null. */
+    public boolean referenceArg() {
+      return referenceArg;
+    }
+
+    public boolean byteArray() {
+      return byteArray;
     }
 
     public boolean array() {
       return method.getReturnType().getKind() == TypeKind.ARRAY;
     }
 
+    /**
+     * True if the property holds pointers to other objects: a ParseObject, or a collection or map
+     * of them.
+     */
+    public boolean pointer() {
+      return pointer;
+    }
+
     public boolean nullable() {
+      return nullable;
+    }
+
+    private static boolean hasNullableAnnotation(ExecutableElement method) {
       for (AnnotationMirror annotationMirror : method.getAnnotationMirrors()) {
         String name = annotationMirror.getAnnotationType().asElement().getSimpleName().toString();
         if (name.equals("Nullable")) {
@@ -591,6 +1126,10 @@ public class AutoParseProcessor extends AbstractProcessor {
     }
 
     public String access() {
+      return access;
+    }
+
+    private static String accessOf(ExecutableElement method) {
       Set<Modifier> mods = method.getModifiers();
       if (mods.contains(Modifier.PUBLIC)) {
         return "public ";
@@ -631,7 +1170,7 @@ public class AutoParseProcessor extends AbstractProcessor {
     // This algorithm is quadratic in the number of methods but it's hard to see how to improve
     // that while still using Elements.overrides.
     List<ExecutableElement> theseMethods = ElementFilter.methodsIn(type.getEnclosedElements());
-    eclipseHack().sortMethodsIfSimulatingEclipse(theseMethods);
+    eclipseHack.sortMethodsIfSimulatingEclipse(theseMethods);
     for (ExecutableElement method : theseMethods) {
       if (!method.getModifiers().contains(Modifier.PRIVATE)) {
         boolean alreadySeen = false;
@@ -676,9 +1215,159 @@ public class AutoParseProcessor extends AbstractProcessor {
     vars.put("wildcardtypes", wildcardTypeString(type));
     vars.put("subclass", simpleNameOf(generatedSubclassName(type)));
     vars.put("cacheHashCode", autoParse.cacheHashCode());
+    vars.put("metrics", "true".equals(processingEnv.getOptions().get(METRICS_OPTION)));
     defineVarsForType(type, vars);
     String text = template.rewrite(vars);
     writeSourceFile(generatedSubclassName(type), text, type);
+    measureGeneratedSource(generatedSubclassName(type), text, type);
+  }
+
+  private void processDocument(TypeElement type) throws CompileException {
+    if (type.getKind() != ElementKind.INTERFACE || !type.getTypeParameters().isEmpty()) {
+      abortWithError("@AutoParse.Document only applies to interfaces without type parameters",
+          type);
+    }
+    List<ExecutableElement> methods = new ArrayList<ExecutableElement>();
+    findLocalAndInheritedMethods(type, methods);
+    Set<TypeMirror> types = new LinkedHashSet<TypeMirror>(returnTypesOf(methods));
+    String pkg = TypeSimplifier.packageNameOf(type);
+    TypeSimplifier typeSimplifier =
+        new TypeSimplifier(processingEnv.getTypeUtils(), pkg, types, referencedTypes);
+    List<DocumentProperty> properties = new ArrayList<DocumentProperty>();
+    boolean errors = false;
+    for (ExecutableElement method : methods) {
+      String read = method.getParameters().isEmpty()
+          && method.getSimpleName().toString().startsWith("get")
+          ? documentRead(method.getReturnType(), "\"" + Property.fieldOf(method) + "\"")
+          : null;
+      if (read == null) {
+        reportError("@AutoParse.Document interfaces can only have getters of String, boolean, "
+            + "int, long, double, other documents and lists of those", method);
+        errors = true;
+      } else {
+        properties.add(new DocumentProperty(
+            method, typeSimplifier.simplify(method.getReturnType()), read));
+      }
+    }
+    if (errors) {
+      throw new CompileException();
+    }
+    Map<String, Object> vars = new TreeMap<String, Object>();
+    vars.put("pkg", pkg);
+    vars.put("imports", typeSimplifier.typesToImport());
+    vars.put("origclass", classNameOf(type));
+    vars.put("subclass", simpleNameOf(generatedDocumentName(type)));
+    vars.put("properties", properties);
+    String text = documentTemplate.rewrite(vars);
+    writeSourceFile(generatedDocumentName(type), text, type);
+    measureGeneratedSource(generatedDocumentName(type), text, type);
+  }
+
+  // The expression that reads a field of the given type in a generated document class, or null if
+  // documents can't hold that type.
+  private String documentRead(TypeMirror type, String key) {
+    switch (type.getKind()) {
+      case BOOLEAN:
+        return "getBoolean(" + key + ")";
+      case INT:
+        return "getInt(" + key + ")";
+      case LONG:
+        return "getLong(" + key + ")";
+      case DOUBLE:
+        return "getDouble(" + key + ")";
+      case DECLARED:
+        break;
+      default:
+        return null;
+    }
+    if (type.toString().equals("java.lang.String")) {
+      return "getString(" + key + ")";
+    }
+    String element = documentElement(type);
+    return element.isEmpty() ? null : element + ".convert(get(" + key + "))";
+  }
+
+  // The Element that converts a stored value to the given type, a document or a list of documents
+  // or of the values that documents can hold, or an empty string if there is none.
+  private String documentElement(TypeMirror type) {
+    if (type.getKind() != TypeKind.DECLARED) {
+      return "";
+    }
+    TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+    if (element.getAnnotation(AutoParse.Document.class) != null) {
+      return generatedDocumentName(element) + ".ELEMENT";
+    }
+    Types typeUtils = processingEnv.getTypeUtils();
+    List<? extends TypeMirror> typeArguments = ((DeclaredType) type).getTypeArguments();
+    if (!typeUtils.isSameType(typeUtils.erasure(type), typeUtils.erasure(getTypeMirror(List.class)))
+        || typeArguments.size() != 1) {
+      return "";
+    }
+    TypeMirror elementType = typeArguments.get(0);
+    String constant = DOCUMENT_LIST_ELEMENTS.get(elementType.toString());
+    String elements = constant != null
+        ? "auto.parse.AutoParseDocument." + constant
+        : elementType.getKind() == TypeKind.DECLARED
+            && ((DeclaredType) elementType).asElement().getAnnotation(AutoParse.Document.class)
+                != null
+            ? generatedDocumentName((TypeElement) ((DeclaredType) elementType).asElement())
+                + ".ELEMENT"
+            : null;
+    return elements != null ? "auto.parse.AutoParseDocument.listOf(" + elements + ")" : "";
+  }
+
+  private static final Map<String, String> DOCUMENT_LIST_ELEMENTS = new HashMap<String, String>();
+  static {
+    DOCUMENT_LIST_ELEMENTS.put("java.lang.String", "STRINGS");
+    DOCUMENT_LIST_ELEMENTS.put("java.lang.Boolean", "BOOLEANS");
+    DOCUMENT_LIST_ELEMENTS.put("java.lang.Integer", "INTEGERS");
+    DOCUMENT_LIST_ELEMENTS.put("java.lang.Long", "LONGS");
+    DOCUMENT_LIST_ELEMENTS.put("java.lang.Double", "DOUBLES");
+  }
+
+  private void measureGeneratedSource(String className, String text, TypeElement type) {
+    String maxMethodsOption = processingEnv.getOptions().get(MAX_METHODS_OPTION);
+    if (maxMethodsOption == null
+        && !"true".equals(processingEnv.getOptions().get(SIZE_REPORT_OPTION))) {
+      return;
+    }
+    CodeSizeReport.Entry size = sizeReport.add(className, text);
+    if (maxMethodsOption == null) {
+      return;
+    }
+    int maxMethods;
+    try {
+      maxMethods = Integer.parseInt(maxMethodsOption.trim());
+    } catch (NumberFormatException e) {
+      reportError("-A" + MAX_METHODS_OPTION + " must be a number of methods, not "
+          + maxMethodsOption, type);
+      return;
+    }
+    if (size.methods > maxMethods) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+          className + " has " + size.methods + " generated methods, more than the "
+          + maxMethods + " allowed by -A" + MAX_METHODS_OPTION, type);
+    }
+  }
+
+  private void writeSizeReport() {
+    if (sizeReport.isEmpty()
+        || !"true".equals(processingEnv.getOptions().get(SIZE_REPORT_OPTION))) {
+      return;
+    }
+    try {
+      FileObject file = processingEnv.getFiler().createResource(
+          StandardLocation.SOURCE_OUTPUT, "", CodeSizeReport.FILE_NAME);
+      Writer writer = file.openWriter();
+      try {
+        writer.write(sizeReport.render());
+      } finally {
+        writer.close();
+      }
+    } catch (IOException e) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+          "Could not write " + CodeSizeReport.FILE_NAME + ": " + e);
+    }
   }
 
   private void defineVarsForType(TypeElement type, Map<String, Object> vars)
@@ -688,7 +1377,9 @@ public class AutoParseProcessor extends AbstractProcessor {
     vars.putAll(objectMethodsToGenerate(methods));
     dontImplementAnnotationEqualsOrHashCode(type, vars);
     List<ExecutableElement> toImplement = methodsToImplement(methods, vars);
-    Set<TypeMirror> types = new HashSet<TypeMirror>();
+    // Ordered sets here and in TypeSimplifier keep the generated source byte-identical from one
+    // build to the next, whatever order the compiler hands us types in.
+    Set<TypeMirror> types = new LinkedHashSet<TypeMirror>();
     types.addAll(returnTypesOf(toImplement));
     TypeMirror javaUtilArrays = getTypeMirror(Arrays.class);
     if (containsArrayType(types)) {
@@ -697,15 +1388,29 @@ public class AutoParseProcessor extends AbstractProcessor {
       types.add(javaUtilArrays);
     }
     String pkg = TypeSimplifier.packageNameOf(type);
-    TypeSimplifier typeSimplifier = new TypeSimplifier(processingEnv.getTypeUtils(), pkg, types);
+    TypeSimplifier typeSimplifier =
+        new TypeSimplifier(processingEnv.getTypeUtils(), pkg, types, referencedTypes);
     vars.put("typeSimplifier", typeSimplifier);
     vars.put("imports", typeSimplifier.typesToImport());
     vars.put("Arrays", typeSimplifier.simplify(javaUtilArrays));
     List<Property> getters = new ArrayList<Property>();
     List<Property> setters = new ArrayList<Property>();
+    TypeMirror parseObject = getTypeMirror("com.parse.ParseObject");
+    Map<String, Integer> compressionThresholds = compressionThresholds(toImplement);
+    Set<String> internedFields = new HashSet<String>();
+    for (ExecutableElement method : toImplement) {
+      if (method.getAnnotation(AutoParse.Interned.class) != null) {
+        internedFields.add(Property.fieldOf(method));
+      }
+    }
     for (ExecutableElement method : toImplement) {
       String propType = typeSimplifier.simplify(method.getReturnType());
-      Property prop = new Property(method, propType, vars);
+      boolean pointer = isPointerType(method.getReturnType(), parseObject)
+          || isPointerContainerType(method.getReturnType(), parseObject);
+      Integer compressionThreshold = compressionThresholds.get(Property.fieldOf(method));
+      Property prop = new Property(method, propType, vars, pointer,
+          compressionThreshold != null ? compressionThreshold : -1,
+          internedFields.contains(Property.fieldOf(method)), viewWrapper(method));
       if (method.getSimpleName().toString().startsWith("get")) {
         getters.add(prop);
       } else if (method.getSimpleName().toString().startsWith("set")) {
@@ -713,18 +1418,219 @@ public class AutoParseProcessor extends AbstractProcessor {
       }
     }
     // If we are running from Eclipse, undo the work of its compiler which sorts methods.
-    eclipseHack().reorderProperties(getters);
-    eclipseHack().reorderProperties(setters);
+    eclipseHack.reorderProperties(getters);
+    eclipseHack.reorderProperties(setters);
     vars.put("getters", getters);
     vars.put("setters", setters);
+    List<Property> enums = new ArrayList<Property>();
+    List<Property> cached = new ArrayList<Property>();
+    List<Property> properties = new ArrayList<Property>(getters);
+    properties.addAll(setters);
+    for (Property property : properties) {
+      if (!property.enumType().isEmpty()) {
+        enums.add(property);
+      } else if (!property.cachedType().isEmpty()) {
+        cached.add(property);
+      }
+    }
+    vars.put("enumCodecs", onePerField(enums));
+    vars.put("cachedProperties", onePerField(cached));
+    List<Property> geoSetters = new ArrayList<Property>();
+    for (Property setter : setters) {
+      if (!setter.geoIndex().isEmpty()) {
+        geoSetters.add(setter);
+      }
+    }
+    vars.put("geoIndexes", onePerField(geoSetters));
+    Set<String> methodNames = new HashSet<String>();
+    for (ExecutableElement method : methods) {
+      methodNames.add(method.getSimpleName().toString());
+    }
+    vars.put("dateMillis", gettersWithCompanions(methodNames, getters, "java.util.Date",
+        "get%sMillis", "set%sMillis"));
+    vars.put("byteBuffers", gettersWithCompanions(methodNames, getters, "byte[]",
+        "get%sBuffer"));
+    defineVarsForPointers(type, getters, vars);
     vars.put("serialVersionUID", getSerialVersionUID(type));
 
     TypeMirror parcelable = getTypeMirror("android.os.Parcelable");
     vars.put("parcelable", processingEnv.getTypeUtils().isAssignable(type.asType(), parcelable));
+
+    if ("true".equals(processingEnv.getOptions().get(LINT_OPTION))) {
+      new PerformanceLint(processingEnv).check(type, methodsOf(getters), methodsOf(setters),
+          (Boolean) vars.get("parcelable"), type.getAnnotation(AutoParse.class).prefetch());
+    }
+  }
+
+  /**
+   * The getters returning {@code type} that get companion methods, like {@code getFooMillis()}
+   * for a Date. {@code companions} are the names of those methods, with %s standing for the
+   * capitalized field. A getter with a default-value argument doesn't get companions, nor does
+   * one whose companions would clash with a method that the class already has.
+   */
+  private static List<Property> gettersWithCompanions(Set<String> methodNames,
+      List<Property> getters, String type, String... companions) {
+    List<Property> withCompanions = new ArrayList<Property>();
+    for (Property getter : getters) {
+      if (!getter.method.getReturnType().toString().equals(type)
+          || !getter.method.getParameters().isEmpty()) {
+        continue;
+      }
+      boolean clashes = false;
+      for (String companion : companions) {
+        clashes |= methodNames.contains(String.format(companion, getter.capitalizedField()));
+      }
+      if (!clashes) {
+        withCompanions.add(getter);
+      }
+    }
+    return withCompanions;
+  }
+
+  // The threshold of each field whose getter or setter is @AutoParse.Compressed. If both are, the
+  // getter's wins.
+  private static Map<String, Integer> compressionThresholds(List<ExecutableElement> methods) {
+    Map<String, Integer> thresholds = new HashMap<String, Integer>();
+    for (ExecutableElement method : methods) {
+      AutoParse.Compressed compressed = method.getAnnotation(AutoParse.Compressed.class);
+      String field = Property.fieldOf(method);
+      if (compressed != null
+          && (method.getSimpleName().toString().startsWith("get")
+              || !thresholds.containsKey(field))) {
+        thresholds.put(field, compressed.threshold());
+      }
+    }
+    return thresholds;
+  }
+
+  // The first of the given properties for each field, in order. The getter and setter of a field
+  // share what is declared for it, like the codec of an enum.
+  private static List<Property> onePerField(List<Property> properties) {
+    Map<String, Property> byField = new LinkedHashMap<String, Property>();
+    for (Property property : properties) {
+      if (!byField.containsKey(property.getField())) {
+        byField.put(property.getField(), property);
+      }
+    }
+    return new ArrayList<Property>(byField.values());
+  }
+
+  private static List<ExecutableElement> methodsOf(List<Property> properties) {
+    List<ExecutableElement> methods = new ArrayList<ExecutableElement>();
+    for (Property property : properties) {
+      methods.add(property.method);
+    }
+    return methods;
+  }
+
+  /**
+   * Defines "pointerKeys", the keys of the properties that hold pointers to other objects and that
+   * prefetchPointers() resolves, and "includes", the paths that the generated queries include.
+   * Those are the paths listed in {@code @AutoParse(prefetch)}, where "*" stands for the pointers
+   * and lists of pointers, but not maps, which ParseQuery cannot include.
+   */
+  private void defineVarsForPointers(TypeElement type, List<Property> getters,
+      Map<String, Object> vars) {
+    List<String> pointerKeys = new ArrayList<String>();
+    List<String> inferred = new ArrayList<String>();
+    for (Property getter : getters) {
+      if (getter.pointer()) {
+        pointerKeys.add(getter.getField());
+        if (!isAssignableToErasure(getter.method.getReturnType(), Map.class)) {
+          inferred.add(getter.getField());
+        }
+      }
+    }
+    Set<String> includes = new LinkedHashSet<String>();
+    for (String path : type.getAnnotation(AutoParse.class).prefetch()) {
+      if (path.equals(AutoParse.PREFETCH_POINTERS)) {
+        includes.addAll(inferred);
+      } else {
+        includes.add(path);
+      }
+    }
+    vars.put("pointerKeys", pointerKeys);
+    vars.put("includes", new ArrayList<String>(includes));
+  }
+
+  /**
+   * Returns the {@code WRAPPER} of Foo if the value of {@code method} is a
+   * {@code Map<String, Foo>} or a {@code List<Foo>} and Foo is an {@code @AutoParse} class, so
+   * that the generated code can return a typed view of the stored map or list. If the value is an
+   * {@code @AutoParse.Document} or a list of them, returns the {@code Element} that reads it
+   * instead, and otherwise an empty string.
+   */
+  private String viewWrapper(ExecutableElement method) {
+    TypeMirror type = valueTypeOf(method);
+    if (holdsDocuments(type)) {
+      return documentElement(type);
+    }
+    if (type.getKind() != TypeKind.DECLARED) {
+      return "";
+    }
+    Types typeUtils = processingEnv.getTypeUtils();
+    List<? extends TypeMirror> typeArguments = ((DeclaredType) type).getTypeArguments();
+    TypeMirror erasure = typeUtils.erasure(type);
+    boolean map = typeUtils.isSameType(erasure, typeUtils.erasure(getTypeMirror(Map.class)))
+        && typeArguments.size() == 2
+        && typeArguments.get(0).toString().equals("java.lang.String");
+    boolean list = typeUtils.isSameType(erasure, typeUtils.erasure(getTypeMirror(List.class)))
+        && typeArguments.size() == 1;
+    if (!(map || list)
+        || typeArguments.get(typeArguments.size() - 1).getKind() != TypeKind.DECLARED) {
+      return "";
+    }
+    TypeElement element = (TypeElement)
+        ((DeclaredType) typeArguments.get(typeArguments.size() - 1)).asElement();
+    if (element.getAnnotation(AutoParse.class) == null
+        || !element.getTypeParameters().isEmpty()) {
+      return "";
+    }
+    return generatedSubclassName(element) + ".WRAPPER";
+  }
+
+  // True for an @AutoParse.Document interface or a collection of them.
+  static boolean holdsDocuments(TypeMirror type) {
+    if (type.getKind() != TypeKind.DECLARED) {
+      return false;
+    }
+    DeclaredType declared = (DeclaredType) type;
+    if (declared.asElement().getAnnotation(AutoParse.Document.class) != null) {
+      return true;
+    }
+    List<? extends TypeMirror> typeArguments = declared.getTypeArguments();
+    return typeArguments.size() == 1
+        && typeArguments.get(0).getKind() == TypeKind.DECLARED
+        && ((DeclaredType) typeArguments.get(0)).asElement()
+            .getAnnotation(AutoParse.Document.class) != null;
+  }
+
+  private boolean isPointerType(TypeMirror type, TypeMirror parseObject) {
+    return type.getKind() == TypeKind.DECLARED
+        && processingEnv.getTypeUtils().isAssignable(type, parseObject);
+  }
+
+  // A Collection or Map whose elements or values are pointers, like List<Person>.
+  private boolean isPointerContainerType(TypeMirror type, TypeMirror parseObject) {
+    if (type.getKind() != TypeKind.DECLARED) {
+      return false;
+    }
+    List<? extends TypeMirror> typeArguments = ((DeclaredType) type).getTypeArguments();
+    if (typeArguments.isEmpty()) {
+      return false;
+    }
+    TypeMirror elementType = typeArguments.get(typeArguments.size() - 1);
+    return (isAssignableToErasure(type, Collection.class) || isAssignableToErasure(type, Map.class))
+        && isPointerType(elementType, parseObject);
+  }
+
+  private boolean isAssignableToErasure(TypeMirror type, Class<?> c) {
+    Types typeUtils = processingEnv.getTypeUtils();
+    return typeUtils.isAssignable(typeUtils.erasure(type), typeUtils.erasure(getTypeMirror(c)));
   }
 
   private Set<TypeMirror> returnTypesOf(List<ExecutableElement> methods) {
-    HashSet<TypeMirror> returnTypes = new HashSet<TypeMirror>();
+    Set<TypeMirror> returnTypes = new LinkedHashSet<TypeMirror>();
     for (ExecutableElement method : methods) {
       returnTypes.add(method.getReturnType());
     }
@@ -807,7 +1713,7 @@ public class AutoParseProcessor extends AbstractProcessor {
             (method.getSimpleName().toString().startsWith("get"))) {
           if (isReferenceArrayType(method.getReturnType())) {
             reportError("An @AutoParse class cannot define an array-valued property unless it is "
-                + "a byte array", method);
+                + "a byte, int, long or double array", method);
             errors = true;
           }
 
@@ -827,7 +1733,7 @@ public class AutoParseProcessor extends AbstractProcessor {
             (method.getSimpleName().toString().startsWith("set"))) {
           if (isReferenceArrayType(method.getParameters().get(0).asType())) {
             reportError("An @AutoParse class cannot define an array-valued property unless it is "
-                + "a byte array", method);
+                + "a byte, int, long or double array", method);
             errors = true;
           }
 
@@ -837,6 +1743,17 @@ public class AutoParseProcessor extends AbstractProcessor {
               method);
           errors = true;
         }
+        if (method.getAnnotation(AutoParse.Compressed.class) != null
+            && !isCompressible(method)) {
+          reportError("@AutoParse.Compressed can only be used on a byte[] or String property",
+              method);
+          errors = true;
+        }
+        if (method.getAnnotation(AutoParse.Interned.class) != null
+            && !valueTypeOf(method).toString().equals("java.lang.String")) {
+          reportError("@AutoParse.Interned can only be used on a String property", method);
+          errors = true;
+        }
       }
     }
     if (errors) {
@@ -845,6 +1762,20 @@ public class AutoParseProcessor extends AbstractProcessor {
     return toImplement;
   }
 
+  // The type of the value that a getter returns or a setter takes.
+  private static TypeMirror valueTypeOf(ExecutableElement method) {
+    return method.getSimpleName().toString().startsWith("set")
+        ? method.getParameters().get(0).asType()
+        : method.getReturnType();
+  }
+
+  private static boolean isCompressible(ExecutableElement method) {
+    TypeMirror type = valueTypeOf(method);
+    return type.toString().equals("java.lang.String")
+        || (type.getKind() == TypeKind.ARRAY
+            && ((ArrayType) type).getComponentType().getKind() == TypeKind.BYTE);
+  }
+
   private boolean isFromParcelable(ExecutableElement method) {
     String name = method.getSimpleName().toString();
     boolean isDescribeContents = name.equals("describeContents") && method.getParameters().isEmpty()
@@ -858,7 +1789,23 @@ public class AutoParseProcessor extends AbstractProcessor {
 
   private static boolean isReferenceArrayType(TypeMirror type) {
     return type.getKind() == TypeKind.ARRAY
-        && (((ArrayType) type).getComponentType().getKind() != TypeKind.BYTE);
+        && ((ArrayType) type).getComponentType().getKind() != TypeKind.BYTE
+        && !isPrimitiveArray(type);
+  }
+
+  // An array that is stored as a list of numbers, and decoded by AutoParseArrays.
+  private static boolean isPrimitiveArray(TypeMirror type) {
+    if (type.getKind() != TypeKind.ARRAY) {
+      return false;
+    }
+    switch (((ArrayType) type).getComponentType().getKind()) {
+      case INT:
+      case LONG:
+      case DOUBLE:
+        return true;
+      default:
+        return false;
+    }
   }
 
   private void writeSourceFile(String className, String text, TypeElement originatingType) {
@@ -923,7 +1870,12 @@ public class AutoParseProcessor extends AbstractProcessor {
   }
 
   private TypeMirror getTypeMirror(String className) {
-    return processingEnv.getElementUtils().getTypeElement(className).asType();
+    TypeMirror typeMirror = typeMirrors.get(className);
+    if (typeMirror == null) {
+      typeMirror = processingEnv.getElementUtils().getTypeElement(className).asType();
+      typeMirrors.put(className, typeMirror);
+    }
+    return typeMirror;
   }
 
   // Why does TypeParameterElement.toString() not return this? Grrr.
@@ -990,36 +1942,24 @@ public class AutoParseProcessor extends AbstractProcessor {
   }
 
   private static String formalArgsString(ExecutableElement method) {
-    List<? extends VariableElement> typeParameters = method.getParameters();
-    if (typeParameters.isEmpty()) {
-      return "";
-    } else {
-      String s = "";
-      String sep = "";
-      for (VariableElement typeParameter : typeParameters) {
-        s += sep + typeParameter.getSimpleName();
-        sep = ", ";
-      }
-      return s;
+    StringBuilder sb = new StringBuilder();
+    String sep = "";
+    for (VariableElement parameter : method.getParameters()) {
+      sb.append(sep).append(parameter.getSimpleName());
+      sep = ", ";
     }
+    return sb.toString();
   }
 
-  private static String formalTypeArgsString(ExecutableElement method, TypeSimplifier typeSimplifier) {
-    List<? extends VariableElement> typeParameters = method.getParameters();
-    if (typeParameters.isEmpty()) {
-      return "";
-    } else {
-      String s = "";
-      String sep = "";
-      for (VariableElement typeParameter : typeParameters) {
-        s += sep + typeSimplifier.simplify(typeParameter.asType()) + " " + typeParameter.getSimpleName();
-        sep = ", ";
-      }
-      return s;
+  private static String formalTypeArgsString(ExecutableElement method,
+      TypeSimplifier typeSimplifier) {
+    StringBuilder sb = new StringBuilder();
+    String sep = "";
+    for (VariableElement parameter : method.getParameters()) {
+      sb.append(sep).append(typeSimplifier.simplify(parameter.asType())).append(' ')
+          .append(parameter.getSimpleName());
+      sep = ", ";
     }
-  }
-
-  private EclipseHack eclipseHack() {
-    return new EclipseHack(processingEnv);
+    return sb.toString();
   }
 }
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse.processor;
+
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Measures the source that {@link AutoParseProcessor} generates for each {@code @AutoParse}
+ * class: its size in bytes and how many methods and fields it declares. Methods include
+ * constructors and the methods of anonymous classes such as the Parcelable CREATOR, since each of
+ * them is a method in the dex file.
+ *
+ * <p>The counts come from scanning the generated source with {@link JavaTokenizer}, which is
+ * enough for code that we generated ourselves.
+ */
+class CodeSizeReport {
+  static final String FILE_NAME = "auto-parse-size-report.txt";
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  // Words that can precede a parenthesis in a class body without declaring a method.
+  private static final Set<String> KEYWORDS = new HashSet<String>(Arrays.asList(
+      "catch", "for", "if", "new", "return", "super", "switch", "synchronized", "this", "throw",
+      "while"));
+
+  static class Entry {
+    final String className;
+    final int sourceBytes;
+    final int methods;
+    final int fields;
+
+    Entry(String className, int sourceBytes, int methods, int fields) {
+      this.className = className;
+      this.sourceBytes = sourceBytes;
+      this.methods = methods;
+      this.fields = fields;
+    }
+  }
+
+  private final SortedMap<String, Entry> entries = new TreeMap<String, Entry>();
+
+  /** Measures the generated {@code source} of {@code className} and adds it to the report. */
+  Entry add(String className, String source) {
+    Entry entry = measure(className, source);
+    entries.put(className, entry);
+    return entry;
+  }
+
+  boolean isEmpty() {
+    return entries.isEmpty();
+  }
+
+  /**
+   * Returns the report as tab-separated lines, one per generated class in name order, followed
+   * by a line of totals.
+   */
+  String render() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("# Source generated by @AutoParse. Methods include constructors and the methods\n");
+    sb.append("# of anonymous classes.\n");
+    sb.append("# class\tbytes\tmethods\tfields\n");
+    long sourceBytes = 0;
+    int methods = 0;
+    int fields = 0;
+    for (Entry entry : entries.values()) {
+      append(sb, entry.className, entry.sourceBytes, entry.methods, entry.fields);
+      sourceBytes += entry.sourceBytes;
+      methods += entry.methods;
+      fields += entry.fields;
+    }
+    append(sb, "total", sourceBytes, methods, fields);
+    return sb.toString();
+  }
+
+  private static void append(StringBuilder sb, String name, long sourceBytes, int methods,
+      int fields) {
+    sb.append(name).append('\t').append(sourceBytes).append('\t').append(methods).append('\t')
+        .append(fields).append('\n');
+  }
+
+  // What a pair of parentheses turned out to be, which decides what a following { opens.
+  private enum Paren { DECLARATION, NEW, OTHER }
+
+  // A class body, in which we count fields, or a block of code, in which we count nothing.
+  private static class Scope {
+    final boolean classBody;
+    // Whether the current statement of a class body has assigned a value or declared a method.
+    boolean assigned;
+    boolean method;
+    boolean empty = true;
+
+    Scope(boolean classBody) {
+      this.classBody = classBody;
+    }
+
+    void endStatement() {
+      assigned = false;
+      method = false;
+      empty = true;
+    }
+  }
+
+  static Entry measure(String className, String source) {
+    JavaTokenizer tokenizer = new JavaTokenizer(new StringReader(source));
+    List<Scope> scopes = new ArrayList<Scope>();
+    scopes.add(new Scope(false));
+    List<Paren> parens = new ArrayList<Paren>();
+    int methods = 0;
+    int fields = 0;
+    String previous = "";
+    String beforePrevious = "";
+    Paren closed = null;  // The parentheses that the previous token closed, if it was a ).
+    boolean afterThrows = false;
+    boolean inNew = false;
+    boolean classPending = false;
+    String token;
+    while ((token = tokenizer.nextToken()) != null) {
+      Scope scope = scopes.get(scopes.size() - 1);
+      if (token.equals("(")) {
+        Paren paren;
+        if (inNew) {
+          paren = Paren.NEW;
+        } else if (scope.classBody && !scope.assigned && isName(previous)
+            && (isName(beforePrevious) || beforePrevious.equals(">")
+                || beforePrevious.equals("]"))) {
+          paren = Paren.DECLARATION;
+        } else {
+          paren = Paren.OTHER;
+        }
+        parens.add(paren);
+      } else if (token.equals(")") && !parens.isEmpty()) {
+        Paren paren = parens.remove(parens.size() - 1);
+        if (paren == Paren.DECLARATION) {
+          scope.method = true;
+        }
+        closed = paren;
+      } else if (token.equals("{")) {
+        boolean classBody;
+        if (classPending || closed == Paren.NEW) {
+          classBody = true;
+        } else {
+          classBody = false;
+          if (closed == Paren.DECLARATION || afterThrows) {
+            methods++;
+          }
+        }
+        scopes.add(new Scope(classBody));
+        classPending = false;
+      } else if (token.equals("}") && scopes.size() > 1) {
+        scopes.remove(scopes.size() - 1);
+        Scope parent = scopes.get(scopes.size() - 1);
+        // A method body or a nested class ends the declaration, but an anonymous class or an
+        // array initializer is part of one.
+        if (parent.classBody && !parent.assigned) {
+          parent.endStatement();
+        }
+      } else if (token.equals(";")) {
+        if (scope.classBody && !scope.empty && !scope.method) {
+          fields++;
+        }
+        scope.endStatement();
+      } else {
+        if (token.equals("=")) {
+          scope.assigned = true;
+        } else if ((token.equals("class") || token.equals("interface") || token.equals("enum"))
+            && !previous.equals(".")) {
+          classPending = true;
+        }
+        if (!token.equals("@") && !previous.equals("@")) {
+          scope.empty = false;
+        }
+      }
+      if (!token.equals(")")) {
+        afterThrows = token.equals("throws") && closed == Paren.DECLARATION
+            || afterThrows && (isName(token) || token.equals(".") || token.equals(","));
+      }
+      if (token.equals("new")) {
+        inNew = true;
+      } else if (!(isName(token) || token.equals(".") || token.equals("<") || token.equals(">")
+          || token.equals(",") || token.equals("?") || token.equals("[") || token.equals("]"))) {
+        inNew = false;
+      }
+      if (!token.equals(")")) {
+        closed = afterThrows ? closed : null;
+      }
+      beforePrevious = previous;
+      previous = token;
+    }
+    return new Entry(className, source.getBytes(UTF_8).length, methods, fields);
+  }
+
+  private static boolean isName(String token) {
+    return Character.isJavaIdentifierStart(token.charAt(0)) && !KEYWORDS.contains(token);
+  }
+}
@@ -28,6 +28,7 @@ import java.net.URL;
 import java.nio.charset.Charset;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -74,6 +75,13 @@ class EclipseHack {
   private final ProcessingEnvironment processingEnv;
   private final boolean eclipseHackTest;
 
+  // The abstract methods of every class in each source file we have scanned, and of each class
+  // file we have read, by URI. A source file with several @AutoParse classes, or with a class
+  // whose getters and setters are reordered separately, is then only scanned once.
+  private final Map<URI, Map<String, List<String>>> sourceMethodOrders =
+      new HashMap<URI, Map<String, List<String>>>();
+  private final Map<URI, List<String>> binaryMethodOrders = new HashMap<URI, List<String>>();
+
   EclipseHack(ProcessingEnvironment processingEnv) {
     boolean eclipseHackTest = processingEnv.getOptions().containsKey(ENABLING_OPTION);
     this.processingEnv = eclipseHackTest
@@ -82,6 +90,15 @@ class EclipseHack {
     this.eclipseHackTest = eclipseHackTest;
   }
 
+  /**
+   * Forgets the method orders read so far. Eclipse keeps using the same processor while files
+   * are edited, so the processor calls this at the start of each round.
+   */
+  void clearCache() {
+    sourceMethodOrders.clear();
+    binaryMethodOrders.clear();
+  }
+
   // Fake implementation of ProcessingEnvironment that looks like Eclipse's, for testing only.
   private static class EclipseProcessingEnvironment implements ProcessingEnvironment {
     private final ProcessingEnvironment processingEnv;
@@ -167,7 +184,11 @@ class EclipseHack {
   private static final Comparator<ExecutableElement> ELEMENT_COMPARATOR =
       new Comparator<ExecutableElement>() {
     @Override public int compare(ExecutableElement a, ExecutableElement b) {
-      return a.getSimpleName().toString().compareTo(b.getSimpleName().toString());
+      int byName = a.getSimpleName().toString().compareTo(b.getSimpleName().toString());
+      // Overloads are ordered by their parameter types, so the order never depends on the
+      // compiler.
+      return byName != 0 ? byName : a.getParameters().toString().compareTo(
+          b.getParameters().toString());
     }
   };
 
@@ -265,7 +286,7 @@ class EclipseHack {
             return new InputStreamReader(inputStream, charset);
           }
         };
-        return new SourcePropertyOrderer(type, readerProvider);
+        return new SourcePropertyOrderer(type, uri, readerProvider);
       }
     } catch (Exception e) {
       // Reflection failed, so we are presumably not in Eclipse.
@@ -279,6 +300,7 @@ class EclipseHack {
 
   private class SourcePropertyOrderer implements PropertyOrderer {
     private final TypeElement type;
+    private final URI uri;
     private final Callable<Reader> readerProvider;
 
     /**
@@ -287,32 +309,46 @@ class EclipseHack {
      * be nested inside another class. Returns an empty list if the order could not be determined.
      *
      * @param type The type whose source is being scanned.
+     * @param uri The location of the source file, under which its methods are cached.
      * @param readerProvider A Callable that returns a Reader that will read the source of the whole
      *     file in which the class is declared.
      */
-    SourcePropertyOrderer(TypeElement type, Callable<Reader> readerProvider) {
+    SourcePropertyOrderer(TypeElement type, URI uri, Callable<Reader> readerProvider) {
       this.type = type;
+      this.uri = uri;
       this.readerProvider = readerProvider;
     }
 
     @Override public List<String> determinePropertyOrder() throws IOException {
+      Map<String, List<String>> methodOrders = sourceMethodOrders.get(uri);
+      if (methodOrders == null) {
+        methodOrders = scan();
+        if (methodOrders == null) {
+          return Collections.emptyList();
+        }
+        sourceMethodOrders.put(uri, methodOrders);
+      }
+      String className = type.getQualifiedName().toString();
+      if (methodOrders.containsKey(className)) {
+        return methodOrders.get(className);
+      } else {
+        return Collections.emptyList();
+      }
+    }
+
+    // Returns the abstract methods of every class in the file, or null if it can't be read.
+    private Map<String, List<String>> scan() throws IOException {
       Reader sourceReader;
       try {
         sourceReader = readerProvider.call();
       } catch (Exception e) {
-        return Collections.emptyList();
+        return null;
       }
       try {
         String packageName = TypeSimplifier.packageNameOf(type);
-        String className = type.getQualifiedName().toString();
         AbstractMethodExtractor extractor = new AbstractMethodExtractor();
         JavaTokenizer tokenizer = new JavaTokenizer(sourceReader);
-        Map<String, List<String>> methodOrders = extractor.abstractMethods(tokenizer, packageName);
-        if (methodOrders.containsKey(className)) {
-          return methodOrders.get(className);
-        } else {
-          return Collections.emptyList();
-        }
+        return extractor.abstractMethods(tokenizer, packageName);
       } finally {
         sourceReader.close();
       }
@@ -328,12 +364,18 @@ class EclipseHack {
 
     @Override
     public List<String> determinePropertyOrder() throws IOException {
+      List<String> methodOrder = binaryMethodOrders.get(classFileUri);
+      if (methodOrder != null) {
+        return methodOrder;
+      }
       InputStream inputStream = null;
       try {
         URL classFileUrl = classFileUri.toURL();
         inputStream = classFileUrl.openStream();
         AbstractMethodLister lister = new AbstractMethodLister(inputStream);
-        return lister.abstractNoArgMethods();
+        methodOrder = lister.abstractNoArgMethods();
+        binaryMethodOrders.put(classFileUri, methodOrder);
+        return methodOrder;
       } finally {
         if (inputStream != null) {
           inputStream.close();
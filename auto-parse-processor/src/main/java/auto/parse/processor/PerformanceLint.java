@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse.processor;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+/**
+ * Warns about property declarations that make the generated code slower than it needs to be,
+ * and suggests a fix for each. {@link AutoParseProcessor} runs this on every {@code @AutoParse}
+ * class when {@code -Aauto.parse.lint=true} is passed.
+ */
+class PerformanceLint {
+  // Boxed types that ParseObject reads as primitives, with the primitive that the getter could
+  // return instead.
+  private static final Map<String, String> UNBOXED = new HashMap<String, String>();
+  static {
+    UNBOXED.put("java.lang.Boolean", "boolean");
+    UNBOXED.put("java.lang.Double", "double");
+    UNBOXED.put("java.lang.Integer", "int");
+    UNBOXED.put("java.lang.Long", "long");
+  }
+
+  private final ProcessingEnvironment processingEnv;
+  private final Types typeUtils;
+
+  PerformanceLint(ProcessingEnvironment processingEnv) {
+    this.processingEnv = processingEnv;
+    this.typeUtils = processingEnv.getTypeUtils();
+  }
+
+  /**
+   * Checks the getters and setters of {@code type}. {@code prefetch} are the paths listed in
+   * {@code @AutoParse(prefetch)}.
+   */
+  void check(TypeElement type, List<ExecutableElement> getters,
+      List<ExecutableElement> setters, boolean parcelable, String[] prefetch) {
+    TypeMirror parseObject = getTypeMirror("com.parse.ParseObject");
+    Map<String, ExecutableElement> gettersByField = new HashMap<String, ExecutableElement>();
+    for (ExecutableElement getter : getters) {
+      String field = AutoParseProcessor.Property.fieldOf(getter);
+      gettersByField.put(field, getter);
+      TypeMirror returnType = getter.getReturnType();
+      checkBoxed(getter, field, returnType);
+      checkBoxedElements(getter, returnType);
+      if (parcelable) {
+        checkBytesInParcel(getter, field, returnType);
+      }
+      if (prefetch.length == 0 && parseObject != null) {
+        checkMapOfPointers(type, getter, field, returnType, parseObject);
+      }
+    }
+    for (ExecutableElement setter : setters) {
+      ExecutableElement getter = gettersByField.get(AutoParseProcessor.Property.fieldOf(setter));
+      if (getter != null && setter.getParameters().size() == 1) {
+        checkSetterMatchesGetter(getter, setter);
+      }
+    }
+  }
+
+  private void checkBoxed(ExecutableElement getter, String field, TypeMirror returnType) {
+    String primitive = UNBOXED.get(returnType.toString());
+    if (primitive == null) {
+      return;
+    }
+    String boxed = simpleName(returnType);
+    warn("Property " + field + " is a " + boxed + ", so every call to " + getter.getSimpleName()
+        + "() boxes the " + primitive + " that ParseObject returns, and it is never null. "
+        + "Declare it as " + primitive + " instead", getter);
+  }
+
+  private void checkBoxedElements(ExecutableElement getter, TypeMirror returnType) {
+    TypeMirror element = elementType(returnType, Collection.class);
+    if (element == null || !isBoxedNumber(element)) {
+      return;
+    }
+    String primitive = UNBOXED.get(element.toString());
+    String fix = primitive != null
+        ? "Declare the property as a " + primitive + "[], which is decoded once and cached"
+        : "For long lists, store the numbers packed in a byte[] or a ParseFile";
+    warn(getter.getSimpleName() + "() returns a collection of " + simpleName(element)
+        + ", which holds every number as a separate object and unboxes it on each read. " + fix,
+        getter);
+  }
+
+  private void checkBytesInParcel(ExecutableElement getter, String field, TypeMirror returnType) {
+    if (returnType.getKind() != TypeKind.ARRAY
+        || ((ArrayType) returnType).getComponentType().getKind() != TypeKind.BYTE) {
+      return;
+    }
+    warn("Property " + field + " is a byte[], which is copied into the Parcel whenever this "
+        + "object is parcelled and can make a transaction too large. Store large data in a "
+        + "ParseFile and parcel its URL instead", getter);
+  }
+
+  private void checkMapOfPointers(TypeElement type, ExecutableElement getter, String field,
+      TypeMirror returnType, TypeMirror parseObject) {
+    TypeMirror value = elementType(returnType, Map.class);
+    if (value == null || value.getKind() != TypeKind.DECLARED
+        || !typeUtils.isAssignable(value, parseObject)) {
+      return;
+    }
+    warn("The " + simpleName(value) + " values of " + field + " cannot be included in a query, "
+        + "so each one is fetched separately when it is first read. Call "
+        + "AutoParse_" + type.getSimpleName() + ".prefetchPointers(list) after loading to fetch "
+        + "them with one request per class. Declaring @AutoParse(prefetch) marks prefetching as "
+        + "handled", getter);
+  }
+
+  private void checkSetterMatchesGetter(ExecutableElement getter, ExecutableElement setter) {
+    TypeMirror getterType = getter.getReturnType();
+    TypeMirror setterType = setter.getParameters().get(0).asType();
+    if (typeUtils.isSameType(getterType, setterType)) {
+      return;
+    }
+    String conversion = getterType.getKind().isPrimitive() != setterType.getKind().isPrimitive()
+        ? "boxed or unboxed"
+        : "converted";
+    warn(setter.getSimpleName() + " takes " + simpleName(setterType) + " but "
+        + getter.getSimpleName() + "() returns " + simpleName(getterType) + ", so the value is "
+        + conversion + " on its way through the ParseObject. Declare both with "
+        + simpleName(getterType), setter);
+  }
+
+  // The last type argument of a type that is a C, like the Integer in List<Integer>, or null.
+  private TypeMirror elementType(TypeMirror type, Class<?> c) {
+    TypeMirror container = getTypeMirror(c.getName());
+    if (type.getKind() != TypeKind.DECLARED
+        || !typeUtils.isAssignable(typeUtils.erasure(type), typeUtils.erasure(container))) {
+      return null;
+    }
+    List<? extends TypeMirror> typeArguments = ((DeclaredType) type).getTypeArguments();
+    return typeArguments.isEmpty() ? null : typeArguments.get(typeArguments.size() - 1);
+  }
+
+  private static boolean isBoxedNumber(TypeMirror type) {
+    String name = type.toString();
+    return name.equals("java.lang.Integer") || name.equals("java.lang.Long")
+        || name.equals("java.lang.Double") || name.equals("java.lang.Float")
+        || name.equals("java.lang.Short") || name.equals("java.lang.Byte");
+  }
+
+  // Like java.util.List<java.lang.Integer> without the packages, which is enough for a message.
+  private static String simpleName(TypeMirror type) {
+    return type.toString().replaceAll("\\b[a-z][a-z0-9_]*\\.", "");
+  }
+
+  private TypeMirror getTypeMirror(String className) {
+    TypeElement element = processingEnv.getElementUtils().getTypeElement(className);
+    return element == null ? null : element.asType();
+  }
+
+  private void warn(String message, ExecutableElement method) {
+    processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, message, method);
+  }
+}
@@ -1,11 +1,12 @@
 package auto.parse.processor;
 
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.TreeMap;
 import java.util.TreeSet;
 
 import javax.lang.model.element.Element;
@@ -45,8 +46,21 @@ final class TypeSimplifier {
   private final Map<String, Spelling> imports;
 
   TypeSimplifier(Types typeUtil, String packageName, Set<TypeMirror> types) {
+    this(typeUtil, packageName, types, new HashMap<String, Set<TypeMirror>>());
+  }
+
+  /**
+   * Like {@link #TypeSimplifier(Types, String, Set)}, but looks up the classes that each type
+   * references in {@code referencedTypesCache}, keyed by the type's {@code toString()}, and adds
+   * the ones it has to compute. Types like {@code List<Person>} are usually shared by many
+   * classes, so a processor that passes the same cache for every class in a round visits each of
+   * them once. Types that mention a type variable are not cached, because {@code T} prints the
+   * same whatever its bounds are, and those differ from one generic class to the next.
+   */
+  TypeSimplifier(Types typeUtil, String packageName, Set<TypeMirror> types,
+      Map<String, Set<TypeMirror>> referencedTypesCache) {
     this.typeUtil = typeUtil;
-    Set<TypeMirror> referenced = referencedClassTypes(typeUtil, types);
+    Set<TypeMirror> referenced = referencedClassTypes(typeUtil, types, referencedTypesCache);
     this.imports = findImports(typeUtil, packageName, referenced);
   }
 
@@ -168,7 +182,7 @@ final class TypeSimplifier {
    */
   private static Map<String, Spelling> findImports(
       Types typeUtil, String packageName, Set<TypeMirror> referenced) {
-    Map<String, Spelling> imports = new HashMap<String, Spelling>();
+    Map<String, Spelling> imports = new TreeMap<String, Spelling>();
     Set<String> ambiguous = ambiguousNames(typeUtil, referenced);
     for (TypeMirror type : referenced) {
       TypeElement typeElement = (TypeElement) typeUtil.asElement(type);
@@ -199,15 +213,59 @@ final class TypeSimplifier {
    * {@code java.util.List<? extends java.lang.Number>} then both {@code java.util.List} and
    * {@code java.lang.Number} will be in the resulting set.
    */
-  private static Set<TypeMirror> referencedClassTypes(Types typeUtil, Set<TypeMirror> types) {
-    Set<TypeMirror> referenced = new HashSet<TypeMirror>();
-    TypeVisitor<Void, Void> typeVisitor = new ReferencedClassTypeVisitor(typeUtil, referenced);
+  private static Set<TypeMirror> referencedClassTypes(Types typeUtil, Set<TypeMirror> types,
+      Map<String, Set<TypeMirror>> cache) {
+    // Insertion order, so that nothing downstream depends on identity hash codes.
+    Set<TypeMirror> referenced = new LinkedHashSet<TypeMirror>();
     for (TypeMirror type : types) {
-      type.accept(typeVisitor, null);
+      boolean cacheable = !type.accept(CONTAINS_TYPE_VARIABLE, null);
+      String key = type.toString();
+      Set<TypeMirror> typeReferences = cacheable ? cache.get(key) : null;
+      if (typeReferences == null) {
+        typeReferences = new LinkedHashSet<TypeMirror>();
+        type.accept(new ReferencedClassTypeVisitor(typeUtil, typeReferences), null);
+        if (cacheable) {
+          cache.put(key, typeReferences);
+        }
+      }
+      referenced.addAll(typeReferences);
     }
     return referenced;
   }
 
+  private static final TypeVisitor<Boolean, Void> CONTAINS_TYPE_VARIABLE =
+      new SimpleTypeVisitor6<Boolean, Void>(false) {
+        @Override
+        public Boolean visitArray(ArrayType t, Void p) {
+          return visit(t.getComponentType(), p);
+        }
+
+        @Override
+        public Boolean visitDeclared(DeclaredType t, Void p) {
+          for (TypeMirror param : t.getTypeArguments()) {
+            if (visit(param, p)) {
+              return true;
+            }
+          }
+          return false;
+        }
+
+        @Override
+        public Boolean visitTypeVariable(TypeVariable t, Void p) {
+          return true;
+        }
+
+        @Override
+        public Boolean visitWildcard(WildcardType t, Void p) {
+          for (TypeMirror bound : new TypeMirror[] {t.getSuperBound(), t.getExtendsBound()}) {
+            if (bound != null && visit(bound, p)) {
+              return true;
+            }
+          }
+          return false;
+        }
+      };
+
   private static class ReferencedClassTypeVisitor extends SimpleTypeVisitor6<Void, Void> {
     private final Types typeUtil;
     private final Set<TypeMirror> referenced;
@@ -251,10 +309,16 @@ final class TypeSimplifier {
   }
 
   private static Set<String> ambiguousNames(Types typeUtil, Set<TypeMirror> types) {
-    Set<String> ambiguous = new HashSet<String>();
-    Set<String> simpleNames = new HashSet<String>();
+    Set<String> ambiguous = new TreeSet<String>();
+    Set<String> simpleNames = new TreeSet<String>();
+    Set<String> qualifiedNames = new TreeSet<String>();
     for (TypeMirror type : types) {
-      String simpleName = typeUtil.asElement(type).getSimpleName().toString();
+      TypeElement typeElement = (TypeElement) typeUtil.asElement(type);
+      // The same class can be here more than once, as different TypeMirror instances.
+      if (!qualifiedNames.add(typeElement.getQualifiedName().toString())) {
+        continue;
+      }
+      String simpleName = typeElement.getSimpleName().toString();
       if (!simpleNames.add(simpleName)) {
         ambiguous.add(simpleName);
       }
@@ -0,0 +1,407 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse.processor;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+import java.util.Map;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import junit.framework.TestCase;
+
+/**
+ * Checks that the hot paths of generated classes don't allocate more than the ParseObject calls
+ * they wrap. Each test compiles a fixed model with {@link AutoParseProcessor}, runs an operation
+ * on the generated class and the same raw ParseObject or Parcel calls many times, and compares
+ * the bytes the thread allocated for each. A template change that brings back boxing, varargs or
+ * temporary collections in a getter, setter or Parcel method fails here.
+ *
+ * <p>The budgets are bytes per operation above the raw calls. The tests pass without checking
+ * anything on a JVM that can't measure allocations per thread.
+ */
+public class AllocationBudgetTest extends TestCase {
+  private static final int WARMUP_ITERATIONS = 20000;
+  private static final int ITERATIONS = 20000;
+  private static final int ROUNDS = 5;
+
+  private static final long GETTER_BUDGET = 0;
+  private static final long MILLIS_GETTER_BUDGET = 0;
+  private static final long ARRAY_GETTER_BUDGET = 0;
+  private static final long SETTER_BUDGET = 0;
+  private static final long WRITE_TO_PARCEL_BUDGET = 0;
+  private static final long CREATE_FROM_PARCEL_BUDGET = 0;
+
+  private static final String MODEL_SOURCE =
+      "package foo.bar;\n" +
+      "import auto.parse.AutoParse;\n" +
+      "@AutoParse\n" +
+      "public abstract class Sample extends com.parse.ParseObject\n" +
+      "    implements android.os.Parcelable {\n" +
+      "  public abstract int getCount();\n" +
+      "  public abstract Sample setCount(int count);\n" +
+      "  public abstract long getVisits();\n" +
+      "  public abstract Sample setVisits(long visits);\n" +
+      "  public abstract double getScore();\n" +
+      "  public abstract Sample setScore(double score);\n" +
+      "  public abstract boolean getActive();\n" +
+      "  public abstract Sample setActive(boolean active);\n" +
+      "  public abstract String getName();\n" +
+      "  public abstract Sample setName(String name);\n" +
+      "  public abstract Sample getParent();\n" +
+      "  public abstract Sample setParent(Sample parent);\n" +
+      "  public abstract java.util.Date getSince();\n" +
+      "  public abstract Sample setSince(java.util.Date since);\n" +
+      "}\n";
+
+  private static final String SERIES_SOURCE =
+      "package foo.bar;\n" +
+      "import auto.parse.AutoParse;\n" +
+      "@AutoParse\n" +
+      "public abstract class Series extends com.parse.ParseObject {\n" +
+      "  public abstract int[] getCounts();\n" +
+      "  public abstract Series setCounts(int[] counts);\n" +
+      "  public abstract long[] getTimes();\n" +
+      "  public abstract Series setTimes(long[] times);\n" +
+      "  public abstract double[] getValues();\n" +
+      "  public abstract Series setValues(double[] values);\n" +
+      "}\n";
+
+  // Each operation has a twin that makes the same ParseObject or Parcel calls directly, so that
+  // only what the generated code adds is counted.
+  private static final String OPERATIONS_SOURCE =
+      "package foo.bar;\n" +
+      "import android.os.Parcel;\n" +
+      "import com.parse.ParseObject;\n" +
+      "public class Operations {\n" +
+      "  static {\n" +
+      "    // ParseObject only constructs subclasses that have been registered.\n" +
+      "    ParseObject.registerSubclass(AutoParse_Sample.class);\n" +
+      "    ParseObject.registerSubclass(AutoParse_Series.class);\n" +
+      "  }\n" +
+      "  static final Sample SAMPLE = fixture();\n" +
+      "  static final ParseObject RAW = SAMPLE;\n" +
+      "  static final Parcel PARCEL = Parcel.obtain();\n" +
+      "  static long sink;\n" +
+      "  static int next = 1000;\n" +
+      "  static Sample fixture() {\n" +
+      "    Sample sample = new AutoParse_Sample();\n" +
+      "    sample.setCount(4242).setVisits(1L << 40).setScore(0.5).setActive(true)\n" +
+      "        .setName(\"fixture\").setParent(new AutoParse_Sample())\n" +
+      "        .setSince(new java.util.Date(1234567890L));\n" +
+      "    return sample;\n" +
+      "  }\n" +
+      "  public static class Getters implements Runnable {\n" +
+      "    @Override public void run() {\n" +
+      "      sink += SAMPLE.getCount() + SAMPLE.getVisits() + (long) SAMPLE.getScore()\n" +
+      "          + (SAMPLE.getActive() ? 1 : 0) + SAMPLE.getName().length()\n" +
+      "          + (SAMPLE.getParent() != null ? 1 : 0);\n" +
+      "    }\n" +
+      "  }\n" +
+      "  public static class RawGetters implements Runnable {\n" +
+      "    @Override public void run() {\n" +
+      "      sink += RAW.getInt(\"count\") + RAW.getLong(\"visits\")\n" +
+      "          + (long) RAW.getDouble(\"score\") + (RAW.getBoolean(\"active\") ? 1 : 0)\n" +
+      "          + RAW.getString(\"name\").length()\n" +
+      "          + (RAW.getParseObject(\"parent\") != null ? 1 : 0);\n" +
+      "    }\n" +
+      "  }\n" +
+      "  public static class MillisGetters implements Runnable {\n" +
+      "    @Override public void run() {\n" +
+      "      sink += ((AutoParse_Sample) SAMPLE).getSinceMillis();\n" +
+      "    }\n" +
+      "  }\n" +
+      "  public static class RawMillisGetters implements Runnable {\n" +
+      "    @Override public void run() {\n" +
+      "      sink += RAW.getDate(\"since\").getTime();\n" +
+      "    }\n" +
+      "  }\n" +
+      "  static final Series SERIES = new AutoParse_Series().setCounts(new int[1000])\n" +
+      "      .setTimes(new long[1000]).setValues(new double[1000]);\n" +
+      "  static final ParseObject RAW_SERIES = SERIES;\n" +
+      "  public static class ArrayGetters implements Runnable {\n" +
+      "    @Override public void run() {\n" +
+      "      sink += SERIES.getCounts()[999] + SERIES.getTimes()[999]\n" +
+      "          + (long) SERIES.getValues()[999];\n" +
+      "    }\n" +
+      "  }\n" +
+      "  public static class RawArrayGetters implements Runnable {\n" +
+      "    @Override public void run() {\n" +
+      "      sink += RAW_SERIES.getList(\"counts\").size()\n" +
+      "          + RAW_SERIES.getList(\"times\").size()\n" +
+      "          + RAW_SERIES.getList(\"values\").size();\n" +
+      "    }\n" +
+      "  }\n" +
+      "  public static class Setters implements Runnable {\n" +
+      "    @Override public void run() {\n" +
+      "      int n = next++;\n" +
+      "      SAMPLE.setCount(n).setVisits(n).setScore(n).setActive((n & 1) == 0);\n" +
+      "    }\n" +
+      "  }\n" +
+      "  public static class RawSetters implements Runnable {\n" +
+      "    @Override public void run() {\n" +
+      "      int n = next++;\n" +
+      "      RAW.put(\"count\", n);\n" +
+      "      RAW.put(\"visits\", (long) n);\n" +
+      "      RAW.put(\"score\", (double) n);\n" +
+      "      RAW.put(\"active\", (n & 1) == 0);\n" +
+      "    }\n" +
+      "  }\n" +
+      "  public static class WriteToParcel implements Runnable {\n" +
+      "    @Override public void run() {\n" +
+      "      PARCEL.setDataPosition(0);\n" +
+      "      SAMPLE.writeToParcel(PARCEL, 0);\n" +
+      "    }\n" +
+      "  }\n" +
+      "  public static class RawWriteToParcel implements Runnable {\n" +
+      "    @Override public void run() {\n" +
+      "      PARCEL.setDataPosition(0);\n" +
+      "      PARCEL.writeValue(RAW.getInt(\"count\"));\n" +
+      "      PARCEL.writeValue(RAW.getLong(\"visits\"));\n" +
+      "      PARCEL.writeValue(RAW.getDouble(\"score\"));\n" +
+      "      PARCEL.writeValue(RAW.getBoolean(\"active\"));\n" +
+      "      PARCEL.writeValue(RAW.getString(\"name\"));\n" +
+      "      PARCEL.writeValue(RAW.getParseObject(\"parent\"));\n" +
+      "      PARCEL.writeValue(RAW.getDate(\"since\"));\n" +
+      "    }\n" +
+      "  }\n" +
+      "  public static class CreateFromParcel implements Runnable {\n" +
+      "    @Override public void run() {\n" +
+      "      PARCEL.setDataPosition(0);\n" +
+      "      sink += AutoParse_Sample.CREATOR.createFromParcel(PARCEL).getCount();\n" +
+      "    }\n" +
+      "  }\n" +
+      "  public static class RawCreateFromParcel implements Runnable {\n" +
+      "    @Override public void run() {\n" +
+      "      ClassLoader loader = Operations.class.getClassLoader();\n" +
+      "      PARCEL.setDataPosition(0);\n" +
+      "      sink += new AutoParse_Sample((Integer) PARCEL.readValue(loader),\n" +
+      "          (Long) PARCEL.readValue(loader), (Double) PARCEL.readValue(loader),\n" +
+      "          (Boolean) PARCEL.readValue(loader), (String) PARCEL.readValue(loader),\n" +
+      "          (Sample) PARCEL.readValue(loader),\n" +
+      "          (java.util.Date) PARCEL.readValue(loader)).getCount();\n" +
+      "    }\n" +
+      "  }\n" +
+      "  static {\n" +
+      "    new WriteToParcel().run();\n" +
+      "  }\n" +
+      "}\n";
+
+  // android.jar only has stubs that throw, so the Parcel path runs against this minimal Parcel.
+  private static final String PARCELABLE_SOURCE =
+      "package android.os;\n" +
+      "public interface Parcelable {\n" +
+      "  int describeContents();\n" +
+      "  void writeToParcel(Parcel dest, int flags);\n" +
+      "  interface Creator<T> {\n" +
+      "    T createFromParcel(Parcel source);\n" +
+      "    T[] newArray(int size);\n" +
+      "  }\n" +
+      "}\n";
+
+  private static final String PARCEL_SOURCE =
+      "package android.os;\n" +
+      "public final class Parcel {\n" +
+      "  private final java.util.ArrayList<Object> values = new java.util.ArrayList<Object>();\n" +
+      "  private int position;\n" +
+      "  public static Parcel obtain() {\n" +
+      "    return new Parcel();\n" +
+      "  }\n" +
+      "  public void recycle() {}\n" +
+      "  public int dataPosition() {\n" +
+      "    return position;\n" +
+      "  }\n" +
+      "  public void setDataPosition(int position) {\n" +
+      "    this.position = position;\n" +
+      "  }\n" +
+      "  public void writeValue(Object value) {\n" +
+      "    if (position < values.size()) {\n" +
+      "      values.set(position, value);\n" +
+      "    } else {\n" +
+      "      values.add(value);\n" +
+      "    }\n" +
+      "    position++;\n" +
+      "  }\n" +
+      "  public Object readValue(ClassLoader loader) {\n" +
+      "    return values.get(position++);\n" +
+      "  }\n" +
+      "}\n";
+
+  private com.sun.management.ThreadMXBean threadBean;
+  private File tmpDir;
+  private ClassLoader loader;
+
+  @Override
+  protected void setUp() throws Exception {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (!(bean instanceof com.sun.management.ThreadMXBean)
+        || !((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+      return;
+    }
+    threadBean = (com.sun.management.ThreadMXBean) bean;
+    threadBean.setThreadAllocatedMemoryEnabled(true);
+    tmpDir = Files.createTempDir();
+    loader = compile(ImmutableMap.of(
+        "foo/bar/Sample.java", MODEL_SOURCE,
+        "foo/bar/Series.java", SERIES_SOURCE,
+        "foo/bar/Operations.java", OPERATIONS_SOURCE,
+        "android/os/Parcelable.java", PARCELABLE_SOURCE,
+        "android/os/Parcel.java", PARCEL_SOURCE));
+  }
+
+  @Override
+  protected void tearDown() {
+    if (tmpDir != null) {
+      assertTrue(deleteDirectory(tmpDir));
+    }
+  }
+
+  private static boolean deleteDirectory(File dir) {
+    File[] files = dir.listFiles();
+    boolean deletedAll = true;
+    for (File file : files) {
+      if (file.isDirectory()) {
+        deletedAll &= deleteDirectory(file);
+      } else if (file.getName().endsWith(".java") || file.getName().endsWith(".class")) {
+        deletedAll &= file.delete();
+      } else {
+        fail("Not deleting unexpected file " + file);
+      }
+    }
+    return dir.delete() && deletedAll;
+  }
+
+  public void testGetters() throws Exception {
+    assertWithinBudget("Getters", GETTER_BUDGET);
+  }
+
+  public void testMillisGetters() throws Exception {
+    assertWithinBudget("MillisGetters", MILLIS_GETTER_BUDGET);
+  }
+
+  public void testArrayGetters() throws Exception {
+    assertWithinBudget("ArrayGetters", ARRAY_GETTER_BUDGET);
+  }
+
+  public void testSetters() throws Exception {
+    assertWithinBudget("Setters", SETTER_BUDGET);
+  }
+
+  public void testWriteToParcel() throws Exception {
+    assertWithinBudget("WriteToParcel", WRITE_TO_PARCEL_BUDGET);
+  }
+
+  public void testCreateFromParcel() throws Exception {
+    assertWithinBudget("CreateFromParcel", CREATE_FROM_PARCEL_BUDGET);
+  }
+
+  private void assertWithinBudget(String operationName, long budget) throws Exception {
+    if (threadBean == null) {
+      return;
+    }
+    Runnable operation = newOperation(operationName);
+    Runnable raw = newOperation("Raw" + operationName);
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      operation.run();
+      raw.run();
+    }
+    long overhead = bytesPerRun(operation) - bytesPerRun(raw);
+    assertTrue(operationName + " allocated " + overhead + " bytes per call more than the raw "
+        + "calls, over its budget of " + budget, overhead <= budget);
+  }
+
+  private Runnable newOperation(String simpleName) throws Exception {
+    return (Runnable) loader.loadClass("foo.bar.Operations$" + simpleName).newInstance();
+  }
+
+  // The fewest bytes allocated in any round, so that a stray allocation by the JIT or the test
+  // harness doesn't count against the operation.
+  private long bytesPerRun(Runnable operation) {
+    long threadId = Thread.currentThread().getId();
+    long fewest = Long.MAX_VALUE;
+    for (int round = 0; round < ROUNDS; round++) {
+      long before = threadBean.getThreadAllocatedBytes(threadId);
+      for (int i = 0; i < ITERATIONS; i++) {
+        operation.run();
+      }
+      fewest = Math.min(fewest, threadBean.getThreadAllocatedBytes(threadId) - before);
+    }
+    return fewest / ITERATIONS;
+  }
+
+  private ClassLoader compile(Map<String, String> sources) throws IOException {
+    JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+    StandardJavaFileManager fileManager = javac.getStandardFileManager(diagnostics, null, null);
+    List<File> files = Lists.newArrayList();
+    for (Map.Entry<String, String> source : sources.entrySet()) {
+      File file = new File(tmpDir, source.getKey());
+      file.getParentFile().mkdirs();
+      Files.write(source.getValue(), file, Charsets.UTF_8);
+      files.add(file);
+    }
+    List<String> options = ImmutableList.of(
+        "-d", tmpDir.getPath(),
+        "-processor", AutoParseProcessor.class.getName());
+    StringWriter compilerOut = new StringWriter();
+    boolean compiledOk = javac.getTask(compilerOut, fileManager, diagnostics, options, null,
+        fileManager.getJavaFileObjectsFromFiles(files)).call();
+    for (Diagnostic<?> diagnostic : diagnostics.getDiagnostics()) {
+      if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+        compilerOut.append(diagnostic.toString()).append('\n');
+      }
+    }
+    assertTrue(compilerOut.toString(), compiledOk);
+    fileManager.close();
+    return new ParcelStubClassLoader(new URL[] {tmpDir.toURI().toURL()},
+        getClass().getClassLoader());
+  }
+
+  // Loads android.os from the compiled stubs ahead of android.jar on the test classpath.
+  private static class ParcelStubClassLoader extends URLClassLoader {
+    ParcelStubClassLoader(URL[] urls, ClassLoader parent) {
+      super(urls, parent);
+    }
+
+    @Override
+    protected synchronized Class<?> loadClass(String name, boolean resolve)
+        throws ClassNotFoundException {
+      if (!name.startsWith("android.os.")) {
+        return super.loadClass(name, resolve);
+      }
+      Class<?> c = findLoadedClass(name);
+      if (c == null) {
+        c = findClass(name);
+      }
+      if (resolve) {
+        resolveClass(c);
+      }
+      return c;
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse.processor;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link CodeSizeReport}.
+ */
+public class CodeSizeReportTest extends TestCase {
+  private static final String SOURCE =
+      "package foo.bar;\n" +
+      "import java.util.List;\n" +
+      "@Generated(\"x\")\n" +
+      "public class AutoParse_Baz extends Baz {\n" +
+      "    ParseObject parseObject;\n" +
+      "    private static final int[] SIZES = {1, 2};\n" +
+      "    static final Creator<Baz> CREATOR = new Creator<Baz>() {\n" +
+      "        @Override public Baz create(int size) {\n" +
+      "            return new AutoParse_Baz(size > 0 ? \"{\" : null);\n" +
+      "        }\n" +
+      "    };\n" +
+      "    public AutoParse_Baz(\n" +
+      "            String name) {\n" +
+      "        this();\n" +
+      "        if (name == null) {\n" +
+      "            throw new IllegalArgumentException();\n" +
+      "        }\n" +
+      "    }\n" +
+      "    @SuppressWarnings(\"unchecked\")\n" +
+      "    private <T> List<T> _get(String key, List<T> defValue) {\n" +
+      "        return (List<T>) parseObject.getList(key);\n" +
+      "    }\n" +
+      "    public static int prefetch(List<? extends Baz> objects)\n" +
+      "            throws com.parse.ParseException, InterruptedException {\n" +
+      "        for (Baz object : objects) {\n" +
+      "            synchronized (object) {}\n" +
+      "        }\n" +
+      "        return Baz.class.getName().length();\n" +
+      "    }\n" +
+      "    static class Holder {\n" +
+      "        String value;\n" +
+      "        String value() { return value; }\n" +
+      "    }\n" +
+      "}\n";
+
+  public void testMeasure() {
+    CodeSizeReport.Entry entry = CodeSizeReport.measure("foo.bar.AutoParse_Baz", SOURCE);
+    assertEquals("foo.bar.AutoParse_Baz", entry.className);
+    assertEquals(SOURCE.length(), entry.sourceBytes);
+    // create, the constructor, _get, prefetch and Holder.value.
+    assertEquals(5, entry.methods);
+    // parseObject, SIZES, CREATOR and Holder.value.
+    assertEquals(4, entry.fields);
+  }
+
+  public void testRender() {
+    CodeSizeReport report = new CodeSizeReport();
+    assertTrue(report.isEmpty());
+    report.add("foo.bar.AutoParse_Zoo", "class AutoParse_Zoo { int a; void a() {} }");
+    report.add("foo.bar.AutoParse_Baz", SOURCE);
+    assertFalse(report.isEmpty());
+    String[] lines = report.render().split("\n");
+    assertEquals(6, lines.length);
+    assertTrue(lines[0].startsWith("#"));
+    assertEquals("# class\tbytes\tmethods\tfields", lines[2]);
+    assertEquals("foo.bar.AutoParse_Baz\t" + SOURCE.length() + "\t5\t4", lines[3]);
+    assertEquals("foo.bar.AutoParse_Zoo\t42\t1\t1", lines[4]);
+    assertEquals("total\t" + (SOURCE.length() + 42) + "\t6\t5", lines[5]);
+  }
+}
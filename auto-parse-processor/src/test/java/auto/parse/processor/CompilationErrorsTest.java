@@ -30,9 +30,12 @@ import java.io.IOException;
 import java.io.StringWriter;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Pattern;
 import javax.tools.Diagnostic;
@@ -146,6 +149,329 @@ public class CompilationErrorsTest extends TestCase {
     assertCompilationFails(ImmutableList.of(testSourceCode));
   }
 
+  public void testCompressedProperties() throws Exception {
+    String testSourceCode =
+        "package foo.bar;\n" +
+        "import auto.parse.AutoParse;\n" +
+        "@AutoParse\n" +
+        "public abstract class Baz extends com.parse.ParseObject {\n" +
+        "  @AutoParse.Compressed public abstract String getNotes();\n" +
+        "  public abstract Baz setNotes(String notes);\n" +
+        "  public abstract byte[] getThumbnail();\n" +
+        "  @AutoParse.Compressed(threshold = 256) public abstract Baz setThumbnail(byte[] t);\n" +
+        "}\n";
+    assertCompilationSucceedsWithoutWarning(ImmutableList.of(testSourceCode));
+  }
+
+  public void testNoCompressedNumbers() throws Exception {
+    String testSourceCode =
+        "package foo.bar;\n" +
+        "import auto.parse.AutoParse;\n" +
+        "@AutoParse\n" +
+        "public abstract class Baz extends com.parse.ParseObject {\n" +
+        "  @AutoParse.Compressed public abstract int getCount();\n" +
+        "  public abstract Baz setCount(int count);\n" +
+        "}\n";
+    assertCompilationResultIs(
+        ImmutableMultimap.of(Diagnostic.Kind.ERROR, Pattern.compile("byte\\[\\] or String")),
+        ImmutableList.of(testSourceCode));
+  }
+
+  public void testInternedProperties() throws Exception {
+    String testSourceCode =
+        "package foo.bar;\n" +
+        "import auto.parse.AutoParse;\n" +
+        "@AutoParse\n" +
+        "public abstract class Baz extends com.parse.ParseObject {\n" +
+        "  @AutoParse.Interned public abstract String getCity();\n" +
+        "  public abstract Baz setCity(String city);\n" +
+        "  public abstract String getStatus();\n" +
+        "  @AutoParse.Interned public abstract Baz setStatus(String status);\n" +
+        "  @AutoParse.Interned @AutoParse.Compressed public abstract String getNotes();\n" +
+        "  public abstract Baz setNotes(String notes);\n" +
+        "}\n";
+    assertCompilationSucceedsWithoutWarning(ImmutableList.of(testSourceCode));
+  }
+
+  public void testNoInternedNumbers() throws Exception {
+    String testSourceCode =
+        "package foo.bar;\n" +
+        "import auto.parse.AutoParse;\n" +
+        "@AutoParse\n" +
+        "public abstract class Baz extends com.parse.ParseObject {\n" +
+        "  public abstract long getCount();\n" +
+        "  @AutoParse.Interned public abstract Baz setCount(long count);\n" +
+        "}\n";
+    assertCompilationResultIs(
+        ImmutableMultimap.of(Diagnostic.Kind.ERROR, Pattern.compile("only be used on a String")),
+        ImmutableList.of(testSourceCode));
+  }
+
+  public void testDocuments() throws Exception {
+    String settings =
+        "package foo.bar;\n" +
+        "import auto.parse.AutoParse;\n" +
+        "import java.util.List;\n" +
+        "@AutoParse.Document\n" +
+        "public interface Settings {\n" +
+        "  String getTheme();\n" +
+        "  boolean getDarkMode();\n" +
+        "  int getFontSize();\n" +
+        "  long getUpdatedAt();\n" +
+        "  double getScale();\n" +
+        "  List<String> getTags();\n" +
+        "  List<Long> getIds();\n" +
+        "  Shortcut getHome();\n" +
+        "  List<Shortcut> getShortcuts();\n" +
+        "  @AutoParse.Document\n" +
+        "  interface Shortcut {\n" +
+        "    String getKey();\n" +
+        "  }\n" +
+        "}\n";
+    String baz =
+        "package foo.bar;\n" +
+        "import auto.parse.AutoParse;\n" +
+        "import java.util.List;\n" +
+        "@AutoParse\n" +
+        "public abstract class Baz extends com.parse.ParseObject\n" +
+        "    implements android.os.Parcelable {\n" +
+        "  public abstract Settings getSettings();\n" +
+        "  public abstract Baz setSettings(Settings settings);\n" +
+        "  public abstract List<Settings.Shortcut> getShortcuts();\n" +
+        "  public abstract Baz setShortcuts(List<Settings.Shortcut> shortcuts);\n" +
+        "}\n";
+    assertCompilationSucceedsWithoutWarning(ImmutableList.of(settings, baz));
+  }
+
+  public void testDocumentWithUnsupportedGetter() throws Exception {
+    String testSourceCode =
+        "package foo.bar;\n" +
+        "import auto.parse.AutoParse;\n" +
+        "@AutoParse.Document\n" +
+        "public interface Settings {\n" +
+        "  java.util.Date getUpdatedAt();\n" +
+        "}\n";
+    assertCompilationResultIs(
+        ImmutableMultimap.of(Diagnostic.Kind.ERROR, Pattern.compile("can only have getters")),
+        ImmutableList.of(testSourceCode));
+  }
+
+  public void testDocumentOnClass() throws Exception {
+    String testSourceCode =
+        "package foo.bar;\n" +
+        "import auto.parse.AutoParse;\n" +
+        "@AutoParse.Document\n" +
+        "public abstract class Settings {\n" +
+        "  public abstract String getTheme();\n" +
+        "}\n";
+    assertCompilationResultIs(
+        ImmutableMultimap.of(Diagnostic.Kind.ERROR, Pattern.compile("only applies to interfaces")),
+        ImmutableList.of(testSourceCode));
+  }
+
+  public void testGeoIndex() throws Exception {
+    String place =
+        "package foo.bar;\n" +
+        "import auto.parse.AutoParse;\n" +
+        "import com.parse.ParseGeoPoint;\n" +
+        "@AutoParse\n" +
+        "public abstract class Place extends com.parse.ParseObject {\n" +
+        "  public abstract ParseGeoPoint getLocation();\n" +
+        "  public abstract Place setLocation(ParseGeoPoint location);\n" +
+        "}\n";
+    String map =
+        "package foo.bar;\n" +
+        "import auto.parse.AutoParseGeoIndex;\n" +
+        "import java.util.List;\n" +
+        "public class Map {\n" +
+        "  final AutoParseGeoIndex<Place> places = new AutoParseGeoIndex<Place>();\n" +
+        "  Map() {\n" +
+        "    AutoParse_Place.setLocationIndex(places);\n" +
+        "  }\n" +
+        "  List<Place> near(double latitude, double longitude) {\n" +
+        "    return places.withinKilometers(latitude, longitude, 5);\n" +
+        "  }\n" +
+        "}\n";
+    assertCompilationSucceedsWithoutWarning(ImmutableList.of(place, map));
+  }
+
+  // The all-args constructor, which the Parcel constructor also goes through, calls the setters,
+  // but only objects set through them afterwards go into the index.
+  public void testGeoIndexSkipsConstructors() throws Exception {
+    String place =
+        "package foo.bar;\n" +
+        "import auto.parse.AutoParse;\n" +
+        "import com.parse.ParseGeoPoint;\n" +
+        "@AutoParse\n" +
+        "public abstract class Place extends com.parse.ParseObject {\n" +
+        "  public abstract ParseGeoPoint getLocation();\n" +
+        "  public abstract Place setLocation(ParseGeoPoint location);\n" +
+        "}\n";
+    String check =
+        "package foo.bar;\n" +
+        "import auto.parse.AutoParseGeoIndex;\n" +
+        "import com.parse.ParseGeoPoint;\n" +
+        "import com.parse.ParseObject;\n" +
+        "public class Check implements java.util.concurrent.Callable<Integer[]> {\n" +
+        "  public Integer[] call() {\n" +
+        "    ParseObject.registerSubclass(AutoParse_Place.class);\n" +
+        "    AutoParseGeoIndex<Place> places = new AutoParseGeoIndex<Place>();\n" +
+        "    AutoParse_Place.setLocationIndex(places);\n" +
+        "    ParseGeoPoint taipei = new ParseGeoPoint(25.03, 121.56);\n" +
+        "    Place copy = new AutoParse_Place(taipei);\n" +
+        "    int afterConstructor = places.size();\n" +
+        "    copy.setLocation(taipei);\n" +
+        "    return new Integer[] {afterConstructor, places.size()};\n" +
+        "  }\n" +
+        "}\n";
+    assertCompilationSucceedsWithoutWarning(ImmutableList.of(place, check));
+    Integer[] sizes = this.<Integer[]>callCompiled("foo.bar.Check");
+    assertEquals(0, sizes[0].intValue());
+    assertEquals(1, sizes[1].intValue());
+  }
+
+  // Rows from a query go in through indexLocation, and every wrapper of a row shares its entry.
+  public void testGeoIndexOfQueryResultsAndWrappers() throws Exception {
+    String place =
+        "package foo.bar;\n" +
+        "import auto.parse.AutoParse;\n" +
+        "import com.parse.ParseGeoPoint;\n" +
+        "@AutoParse\n" +
+        "public abstract class Place extends com.parse.ParseObject {\n" +
+        "  public abstract ParseGeoPoint getLocation();\n" +
+        "  public abstract Place setLocation(ParseGeoPoint location);\n" +
+        "}\n";
+    String check =
+        "package foo.bar;\n" +
+        "import auto.parse.AutoParseGeoIndex;\n" +
+        "import com.parse.ParseGeoPoint;\n" +
+        "import com.parse.ParseObject;\n" +
+        "import java.util.Arrays;\n" +
+        "public class Check implements java.util.concurrent.Callable<Object[]> {\n" +
+        "  public Object[] call() {\n" +
+        "    ParseObject.registerSubclass(AutoParse_Place.class);\n" +
+        "    AutoParseGeoIndex<Place> places =\n" +
+        "        new AutoParseGeoIndex<Place>(AutoParse_Place.WRAPPER);\n" +
+        "    AutoParse_Place.setLocationIndex(places);\n" +
+        "    ParseObject row = ParseObject.createWithoutData(\"Row\", \"r1\");\n" +
+        "    row.put(\"location\", new ParseGeoPoint(25.03, 121.56));\n" +
+        "    ParseObject other = new ParseObject(\"Row\");\n" +
+        "    other.put(\"location\", new ParseGeoPoint(25.04, 121.57));\n" +
+        "    AutoParse_Place.indexLocation(Arrays.asList(\n" +
+        "        AutoParse_Place.WRAPPER.wrap(row), AutoParse_Place.WRAPPER.wrap(other)));\n" +
+        "    int afterQuery = places.size();\n" +
+        "    AutoParse_Place.WRAPPER.wrap(row).setLocation(new ParseGeoPoint(25.05, 121.58));\n" +
+        "    ParseObject refetched = ParseObject.createWithoutData(\"Row\", \"r1\");\n" +
+        "    places.put(AutoParse_Place.WRAPPER.wrap(refetched), 25.05, 121.58);\n" +
+        "    Place near = places.withinKilometers(25.05, 121.58, 0.1).get(0);\n" +
+        "    return new Object[] {afterQuery, places.size(),\n" +
+        "        AutoParse_Place.WRAPPER.unwrap(near) == refetched};\n" +
+        "  }\n" +
+        "}\n";
+    assertCompilationSucceedsWithoutWarning(ImmutableList.of(place, check));
+    Object[] results = this.<Object[]>callCompiled("foo.bar.Check");
+    assertEquals(2, results[0]);
+    assertEquals(2, results[1]);
+    assertEquals(true, results[2]);
+  }
+
+  // A wrapper made by WRAPPER or the ParseObject constructor reads the object it wraps, so its
+  // setters must write there too.
+  public void testWrapperSettersWriteThrough() throws Exception {
+    String note =
+        "package foo.bar;\n" +
+        "import auto.parse.AutoParse;\n" +
+        "@AutoParse\n" +
+        "public abstract class Note extends com.parse.ParseObject {\n" +
+        "  public abstract String getTitle();\n" +
+        "  public abstract Note setTitle(String title);\n" +
+        "  @AutoParse.Compressed(threshold = 0) public abstract String getBody();\n" +
+        "  public abstract Note setBody(String body);\n" +
+        "}\n";
+    String check =
+        "package foo.bar;\n" +
+        "import com.parse.ParseObject;\n" +
+        "public class Check implements java.util.concurrent.Callable<Object[]> {\n" +
+        "  public Object[] call() {\n" +
+        "    ParseObject.registerSubclass(AutoParse_Note.class);\n" +
+        "    ParseObject row = new ParseObject(\"Row\");\n" +
+        "    row.put(\"body\", \"old\");\n" +
+        "    Note note = AutoParse_Note.WRAPPER.wrap(row);\n" +
+        "    note.getBody();\n" +
+        "    note.setTitle(\"Groceries\").setBody(\"milk, eggs\");\n" +
+        "    return new Object[] {row.getString(\"title\"), note.getTitle(), note.getBody(),\n" +
+        "        AutoParse_Note.WRAPPER.unwrap(note) == row};\n" +
+        "  }\n" +
+        "}\n";
+    assertCompilationSucceedsWithoutWarning(ImmutableList.of(note, check));
+    Object[] results = this.<Object[]>callCompiled("foo.bar.Check");
+    assertEquals("Groceries", results[0]);
+    assertEquals("Groceries", results[1]);
+    assertEquals("milk, eggs", results[2]);
+    assertEquals(true, results[3]);
+  }
+
+  public void testInternedGetterSharesDecodedValues() throws Exception {
+    String place =
+        "package foo.bar;\n" +
+        "import auto.parse.AutoParse;\n" +
+        "@AutoParse\n" +
+        "public abstract class Place extends com.parse.ParseObject {\n" +
+        "  @AutoParse.Interned public abstract String getCity();\n" +
+        "  public abstract Place setCity(String city);\n" +
+        "}\n";
+    String check =
+        "package foo.bar;\n" +
+        "import com.parse.ParseObject;\n" +
+        "public class Check implements java.util.concurrent.Callable<Object[]> {\n" +
+        "  public Object[] call() {\n" +
+        "    ParseObject.registerSubclass(AutoParse_Place.class);\n" +
+        "    // Rows as a query would decode them, each with its own copy of the value.\n" +
+        "    ParseObject first = new ParseObject(\"Row\");\n" +
+        "    first.put(\"city\", new String(\"Taipei\"));\n" +
+        "    ParseObject second = new ParseObject(\"Row\");\n" +
+        "    second.put(\"city\", new String(\"Taipei\"));\n" +
+        "    Place a = AutoParse_Place.WRAPPER.wrap(first);\n" +
+        "    Place b = AutoParse_Place.WRAPPER.wrap(second);\n" +
+        "    String city = a.getCity();\n" +
+        "    first.put(\"city\", \"Tainan\");\n" +
+        "    return new Object[] {city, b.getCity(), a.getCity()};\n" +
+        "  }\n" +
+        "}\n";
+    assertCompilationSucceedsWithoutWarning(ImmutableList.of(place, check));
+    Object[] results = this.<Object[]>callCompiled("foo.bar.Check");
+    assertEquals("Taipei", results[0]);
+    assertSame(results[0], results[1]);
+    assertEquals("Tainan", results[2]);
+  }
+
+  public void testMetricsHooks() throws Exception {
+    String testSourceCode =
+        "package foo.bar;\n" +
+        "import auto.parse.AutoParse;\n" +
+        "@AutoParse\n" +
+        "public abstract class Baz extends com.parse.ParseObject\n" +
+        "    implements android.os.Parcelable {\n" +
+        "  public abstract String getName();\n" +
+        "  public abstract Baz setName(String name);\n" +
+        "  public abstract java.util.Date getSince();\n" +
+        "  public abstract Baz setSince(java.util.Date since);\n" +
+        "  public abstract int[] getCounts();\n" +
+        "  public abstract Baz setCounts(int[] counts);\n" +
+        "}\n";
+    assertCompilationResultIs(ImmutableMultimap.<Diagnostic.Kind, Pattern>of(),
+        ImmutableList.of(testSourceCode), ImmutableList.of("-Aauto.parse.metrics=true"));
+  }
+
+  // Loads the compiled class, which must be a Callable, from the output directory and calls it.
+  private <V> V callCompiled(String className) throws Exception {
+    URLClassLoader loader =
+        new URLClassLoader(new URL[] {tmpDir.toURI().toURL()}, getClass().getClassLoader());
+    @SuppressWarnings("unchecked")
+    Callable<V> callable = (Callable<V>) loader.loadClass(className).newInstance();
+    return callable.call();
+  }
+
   /* FIXME
   public void testNoWarningsFromGenerics() throws Exception {
     String testSourceCode =
@@ -348,6 +674,90 @@ public class CompilationErrorsTest extends TestCase {
     assertTrue(exceptionWasThrown.get());
   }
 
+  public void testLintBoxedProperty() throws Exception {
+    String testSourceCode =
+        "package foo.bar;\n" +
+        "import auto.parse.AutoParse;\n" +
+        "@AutoParse\n" +
+        "public abstract class Baz extends com.parse.ParseObject {\n" +
+        "  public abstract Integer getCount();\n" +
+        "  public abstract Baz setCount(Integer count);\n" +
+        "}\n";
+    assertLintWarning(Pattern.compile("count is a Integer.*Declare it as int"), testSourceCode);
+  }
+
+  public void testLintListOfBoxedNumbers() throws Exception {
+    String testSourceCode =
+        "package foo.bar;\n" +
+        "import auto.parse.AutoParse;\n" +
+        "import java.util.List;\n" +
+        "@AutoParse\n" +
+        "public abstract class Baz extends com.parse.ParseObject {\n" +
+        "  public abstract List<Double> getScores();\n" +
+        "  public abstract Baz setScores(List<Double> scores);\n" +
+        "}\n";
+    assertLintWarning(
+        Pattern.compile("getScores\\(\\) returns a collection of Double.*a double\\[\\]"),
+        testSourceCode);
+  }
+
+  public void testLintBytesOnParcelable() throws Exception {
+    String testSourceCode =
+        "package foo.bar;\n" +
+        "import auto.parse.AutoParse;\n" +
+        "@AutoParse\n" +
+        "public abstract class Baz extends com.parse.ParseObject\n" +
+        "    implements android.os.Parcelable {\n" +
+        "  public abstract byte[] getThumbnail();\n" +
+        "  public abstract Baz setThumbnail(byte[] thumbnail);\n" +
+        "}\n";
+    assertLintWarning(Pattern.compile("thumbnail is a byte\\[\\].*ParseFile"), testSourceCode);
+  }
+
+  public void testLintMapOfPointersWithoutPrefetch() throws Exception {
+    String testSourceCode =
+        "package foo.bar;\n" +
+        "import auto.parse.AutoParse;\n" +
+        "import java.util.Map;\n" +
+        "@AutoParse\n" +
+        "public abstract class Baz extends com.parse.ParseObject {\n" +
+        "  public abstract Map<String, Baz> getChildren();\n" +
+        "  public abstract Baz setChildren(Map<String, Baz> children);\n" +
+        "}\n";
+    assertLintWarning(Pattern.compile("Baz values of children.*AutoParse_Baz.prefetchPointers"),
+        testSourceCode);
+  }
+
+  public void testLintSetterTypeMismatch() throws Exception {
+    String testSourceCode =
+        "package foo.bar;\n" +
+        "import auto.parse.AutoParse;\n" +
+        "@AutoParse\n" +
+        "public abstract class Baz extends com.parse.ParseObject {\n" +
+        "  public abstract long getVisits();\n" +
+        "  public abstract Baz setVisits(Long visits);\n" +
+        "}\n";
+    assertLintWarning(Pattern.compile("setVisits takes Long but getVisits\\(\\) returns long"),
+        testSourceCode);
+  }
+
+  public void testLintOffByDefault() throws Exception {
+    String testSourceCode =
+        "package foo.bar;\n" +
+        "import auto.parse.AutoParse;\n" +
+        "@AutoParse\n" +
+        "public abstract class Baz extends com.parse.ParseObject {\n" +
+        "  public abstract long getVisits();\n" +
+        "  public abstract Baz setVisits(Long visits);\n" +
+        "}\n";
+    assertCompilationSucceedsWithoutWarning(ImmutableList.of(testSourceCode));
+  }
+
+  private void assertLintWarning(Pattern expected, String testSourceCode) throws IOException {
+    assertCompilationResultIs(ImmutableMultimap.of(Diagnostic.Kind.WARNING, expected),
+        ImmutableList.of(testSourceCode), ImmutableList.of("-Aauto.parse.lint=true"));
+  }
+
   // We compile the test classes by writing the source out to our temporary directory and invoking
   // the compiler on them. An earlier version of this test used an in-memory JavaFileManager, but
   // that is probably overkill, and in any case led to a problem that I gave up trying to fix,
@@ -370,15 +780,24 @@ public class CompilationErrorsTest extends TestCase {
   private void assertCompilationResultIs(
       Multimap<Diagnostic.Kind, Pattern> expectedDiagnostics,
       List<String> testSourceCode) throws IOException {
+    assertCompilationResultIs(expectedDiagnostics, testSourceCode, ImmutableList.<String>of());
+  }
+
+  private void assertCompilationResultIs(
+      Multimap<Diagnostic.Kind, Pattern> expectedDiagnostics,
+      List<String> testSourceCode,
+      List<String> extraOptions) throws IOException {
     assertFalse(testSourceCode.isEmpty());
 
     StringWriter compilerOut = new StringWriter();
 
-    List<String> options = ImmutableList.of(
-        "-sourcepath", tmpDir.getPath(),
-        "-d", tmpDir.getPath(),
-        "-processor", AutoParseProcessor.class.getName(),
-        "-Xlint");
+    List<String> options = ImmutableList.<String>builder()
+        .add("-sourcepath", tmpDir.getPath())
+        .add("-d", tmpDir.getPath())
+        .add("-processor", AutoParseProcessor.class.getName())
+        .add("-Xlint")
+        .addAll(extraOptions)
+        .build();
     javac.getTask(compilerOut, fileManager, diagnosticCollector, options, null, null);
     // This doesn't compile anything but communicates the paths to the JavaFileManager.
 
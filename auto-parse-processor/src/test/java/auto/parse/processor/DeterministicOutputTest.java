@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse.processor;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import junit.framework.TestCase;
+
+/**
+ * Checks that the processor generates byte-identical sources for the same inputs, so that build
+ * caches and compile avoidance keep working. Each test runs the processor twice in a way that
+ * must not matter and compares every generated file.
+ */
+public class DeterministicOutputTest extends TestCase {
+  private static final Map<String, String> SOURCES = ImmutableMap.of(
+      "foo/bar/Owner.java",
+      "package foo.bar;\n" +
+      "import auto.parse.AutoParse;\n" +
+      "import foo.baz.Pet;\n" +
+      "import java.util.Date;\n" +
+      "import java.util.List;\n" +
+      "import java.util.Map;\n" +
+      "@AutoParse\n" +
+      "public abstract class Owner extends com.parse.ParseObject\n" +
+      "    implements android.os.Parcelable {\n" +
+      "  public abstract String getName();\n" +
+      "  public abstract Owner setName(String name);\n" +
+      "  public abstract Date getSince();\n" +
+      "  public abstract Owner setSince(Date since);\n" +
+      "  public abstract List<Pet> getPets();\n" +
+      "  public abstract Owner setPets(List<Pet> pets);\n" +
+      "  public abstract Map<String, Pet> getPetsByName();\n" +
+      "  public abstract Owner setPetsByName(Map<String, Pet> petsByName);\n" +
+      "  public abstract com.parse.ParseFile getAvatar();\n" +
+      "  public abstract Owner setAvatar(com.parse.ParseFile avatar);\n" +
+      "  public abstract org.json.JSONObject getExtra();\n" +
+      "  public abstract Owner setExtra(org.json.JSONObject extra);\n" +
+      "  public abstract long getVisits();\n" +
+      "  public abstract Owner setVisits(long visits);\n" +
+      "}\n",
+      "foo/baz/Pet.java",
+      "package foo.baz;\n" +
+      "import auto.parse.AutoParse;\n" +
+      "import foo.bar.Owner;\n" +
+      "import java.util.List;\n" +
+      "@AutoParse\n" +
+      "public abstract class Pet extends com.parse.ParseObject {\n" +
+      "  public abstract Owner getOwner();\n" +
+      "  public abstract Pet setOwner(Owner owner);\n" +
+      "  public abstract List<String> getTags();\n" +
+      "  public abstract Pet setTags(List<String> tags);\n" +
+      "  public abstract byte[] getPhoto();\n" +
+      "  public abstract Pet setPhoto(byte[] photo);\n" +
+      "  @AutoParse\n" +
+      "  public abstract static class Vet extends com.parse.ParseObject {\n" +
+      "    public abstract List<Pet> getPatients();\n" +
+      "    public abstract Vet setPatients(List<Pet> patients);\n" +
+      "    public abstract String getName();\n" +
+      "    public abstract Vet setName(String name);\n" +
+      "  }\n" +
+      "}\n",
+      "foo/bar/Clinic.java",
+      "package foo.bar;\n" +
+      "import auto.parse.AutoParse;\n" +
+      "import java.util.Map;\n" +
+      "@AutoParse(prefetch = {\"vet\", \"owners\"})\n" +
+      "public abstract class Clinic extends com.parse.ParseObject {\n" +
+      "  public abstract foo.baz.Pet.Vet getVet();\n" +
+      "  public abstract Clinic setVet(foo.baz.Pet.Vet vet);\n" +
+      "  public abstract java.util.List<Owner> getOwners();\n" +
+      "  public abstract Clinic setOwners(java.util.List<Owner> owners);\n" +
+      "  public abstract Map<String, String> getHours();\n" +
+      "  public abstract Clinic setHours(Map<String, String> hours);\n" +
+      "}\n");
+
+  private final List<File> tmpDirs = Lists.newArrayList();
+
+  @Override
+  protected void tearDown() {
+    for (File tmpDir : tmpDirs) {
+      assertTrue(deleteDirectory(tmpDir));
+    }
+  }
+
+  private static boolean deleteDirectory(File dir) {
+    boolean deletedAll = true;
+    for (File file : dir.listFiles()) {
+      if (file.isDirectory()) {
+        deletedAll &= deleteDirectory(file);
+      } else if (file.getName().endsWith(".java") || file.getName().endsWith(".txt")) {
+        deletedAll &= file.delete();
+      } else {
+        fail("Not deleting unexpected file " + file);
+      }
+    }
+    return dir.delete() && deletedAll;
+  }
+
+  public void testInputOrderDoesNotMatter() throws Exception {
+    List<String> forward = Lists.newArrayList(SOURCES.keySet());
+    List<String> backward = Lists.reverse(forward);
+    List<String> options = ImmutableList.of("-Aauto.parse.sizeReport=true");
+    assertSameOutput(generate(forward, options), generate(backward, options));
+  }
+
+  public void testEclipseReorderingMatchesJavac() throws Exception {
+    List<String> files = Lists.newArrayList(SOURCES.keySet());
+    assertSameOutput(generate(files, ImmutableList.<String>of()),
+        generate(Lists.reverse(files), ImmutableList.of("-A" + EclipseHack.ENABLING_OPTION)));
+  }
+
+  private static void assertSameOutput(SortedMap<String, byte[]> expected,
+      SortedMap<String, byte[]> actual) {
+    assertEquals(expected.keySet(), actual.keySet());
+    assertTrue(expected.containsKey("foo/bar/AutoParse_Owner.java"));
+    assertTrue(expected.containsKey("foo/baz/AutoParse_Pet_Vet.java"));
+    for (Map.Entry<String, byte[]> file : expected.entrySet()) {
+      byte[] actualBytes = actual.get(file.getKey());
+      if (!Arrays.equals(file.getValue(), actualBytes)) {
+        assertEquals(file.getKey(), new String(file.getValue(), Charsets.UTF_8),
+            new String(actualBytes, Charsets.UTF_8));
+        fail(file.getKey() + " differs in encoding");
+      }
+    }
+  }
+
+  // Runs the processor over SOURCES, passing the files to javac in the given order, and returns
+  // the generated files by relative path.
+  private SortedMap<String, byte[]> generate(List<String> order, List<String> extraOptions)
+      throws IOException {
+    File sourceDir = Files.createTempDir();
+    File generatedDir = Files.createTempDir();
+    tmpDirs.add(sourceDir);
+    tmpDirs.add(generatedDir);
+    List<File> files = Lists.newArrayList();
+    for (String path : order) {
+      File file = new File(sourceDir, path);
+      file.getParentFile().mkdirs();
+      Files.write(SOURCES.get(path), file, Charsets.UTF_8);
+      files.add(file);
+    }
+    JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+    StandardJavaFileManager fileManager = javac.getStandardFileManager(null, null, null);
+    List<String> options = ImmutableList.<String>builder()
+        .add("-proc:only")
+        .add("-sourcepath", sourceDir.getPath())
+        .add("-s", generatedDir.getPath())
+        .add("-processor", AutoParseProcessor.class.getName())
+        .addAll(extraOptions)
+        .build();
+    StringWriter compilerOut = new StringWriter();
+    boolean ok = javac.getTask(compilerOut, fileManager, null, options, null,
+        fileManager.getJavaFileObjectsFromFiles(files)).call();
+    fileManager.close();
+    assertTrue(compilerOut.toString(), ok);
+    SortedMap<String, byte[]> generated = new TreeMap<String, byte[]>();
+    readFiles(generatedDir, "", generated);
+    return generated;
+  }
+
+  private static void readFiles(File dir, String prefix, Map<String, byte[]> files)
+      throws IOException {
+    for (File file : dir.listFiles()) {
+      if (file.isDirectory()) {
+        readFiles(file, prefix + file.getName() + "/", files);
+      } else {
+        files.put(prefix + file.getName(), Files.toByteArray(file));
+      }
+    }
+  }
+}
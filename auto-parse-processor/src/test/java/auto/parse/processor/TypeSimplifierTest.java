@@ -25,7 +25,9 @@ import java.io.StringWriter;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.RoundEnvironment;
@@ -212,6 +214,45 @@ public class TypeSimplifierTest extends TestCase {
       assertEquals(expectedImports, ImmutableList.copyOf(typeSimplifier.typesToImport()));
     }
 
+    public void testImportsWithSharedCache() {
+      TypeElement list = typeElementOf("java.util.List");
+      TypeMirror listOfTimer = typeUtil.getDeclaredType(list, typeMirrorOf("java.util.Timer"));
+      Map<String, Set<TypeMirror>> cache = new HashMap<String, Set<TypeMirror>>();
+      TypeSimplifier first = new TypeSimplifier(typeUtil, "foo.bar",
+          ImmutableSet.of(listOfTimer, typeMirrorOf("java.util.regex.Pattern")), cache);
+      assertEquals(ImmutableList.of("java.util.List", "java.util.Timer", "java.util.regex.Pattern"),
+          ImmutableList.copyOf(first.typesToImport()));
+      assertEquals(ImmutableSet.of("java.util.List<java.util.Timer>", "java.util.regex.Pattern"),
+          cache.keySet());
+      // A different instance of List<Timer>, as another class in the same round would have, uses
+      // the cached closure and still imports Timer once.
+      TypeMirror otherListOfTimer =
+          typeUtil.getDeclaredType(list, typeMirrorOf("java.util.Timer"));
+      TypeSimplifier second = new TypeSimplifier(typeUtil, "foo.baz",
+          ImmutableSet.of(otherListOfTimer, typeMirrorOf("java.util.Timer")), cache);
+      assertEquals(ImmutableList.of("java.util.List", "java.util.Timer"),
+          ImmutableList.copyOf(second.typesToImport()));
+      assertEquals(3, cache.size());
+    }
+
+    public void testImportsWithSharedCacheAndTypeVariables() {
+      // Both type variables print as M, but only the second is bounded by TableModel.
+      TypeMirror unbounded =
+          typeElementOf("javax.swing.DefaultRowSorter").getTypeParameters().get(0).asType();
+      TypeMirror bounded =
+          typeElementOf("javax.swing.table.TableRowSorter").getTypeParameters().get(0).asType();
+      assertEquals(unbounded.toString(), bounded.toString());
+      Map<String, Set<TypeMirror>> cache = new HashMap<String, Set<TypeMirror>>();
+      TypeSimplifier first =
+          new TypeSimplifier(typeUtil, "foo.bar", ImmutableSet.of(unbounded), cache);
+      assertEquals(ImmutableSet.of(), first.typesToImport());
+      TypeSimplifier second =
+          new TypeSimplifier(typeUtil, "foo.bar", ImmutableSet.of(bounded), cache);
+      assertEquals(ImmutableList.of("javax.swing.table.TableModel"),
+          ImmutableList.copyOf(second.typesToImport()));
+      assertEquals(ImmutableSet.of(), cache.keySet());
+    }
+
     public void testImportsForArrayTypes() {
       TypeElement list = typeElementOf("java.util.List");
       TypeElement set = typeElementOf("java.util.Set");
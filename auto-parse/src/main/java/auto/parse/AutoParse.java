@@ -49,4 +49,60 @@ public @interface AutoParse {
    * this feature makes it <i>especially</i> dangerous.
    */
   boolean cacheHashCode() default false;
+
+  /**
+   * A {@link #prefetch} path that stands for every property whose type is a
+   * {@link com.parse.ParseObject} or a list of them.
+   */
+  String PREFETCH_POINTERS = "*";
+
+  /**
+   * The paths that the generated {@code getQuery()}, {@code getAutoQuery()} and {@code cursor}
+   * queries should {@link com.parse.ParseQuery#include include}, for example
+   * {@code {"author", "friends.address"}}, or {@code {"*"}} to include every pointer and list of
+   * pointers. Nothing is included by default, since every include makes each result larger.
+   */
+  String[] prefetch() default {};
+
+  /**
+   * Marks a {@code byte[]} or {@code String} property whose values should be stored deflated
+   * once they reach {@link #threshold} bytes, for large values that compress well such as
+   * serialized embeddings or rich text. It can be on the getter, the setter or both. The getter
+   * inflates the stored value the first time it is read and keeps it until the stored value
+   * changes. See {@link AutoParseCompression} for the stored form, which keeps the column type:
+   * bytes for a {@code byte[]} and a string for a {@code String}. Values saved before this was
+   * added read back as they were.
+   */
+  @Retention(RetentionPolicy.SOURCE) @Target(ElementType.METHOD)
+  @interface Compressed {
+    /** The size in bytes from which values are deflated. */
+    int threshold() default 1024;
+  }
+
+  /**
+   * Marks a {@code String} property with few distinct values, such as a status or a country code,
+   * whose values should be shared between objects. It can be on the getter, the setter or both.
+   * The setter stores, and the getter returns, the instance kept by {@link AutoParseInterner}, so
+   * a million objects with the same city hold one copy of its name. The getter interns a fetched
+   * value when it first reads it, and again only after the stored value changes.
+   */
+  @Retention(RetentionPolicy.SOURCE) @Target(ElementType.METHOD)
+  @interface Interned {
+  }
+
+  /**
+   * Marks an interface that describes an embedded JSON object, such as settings or metadata. Its
+   * methods are getters of {@code String}, {@code boolean}, {@code int}, {@code long},
+   * {@code double}, other documents, or lists of those. For an interface {@code Foo}, the
+   * processor generates {@code AutoParseDocument_Foo}, which reads each field from the stored
+   * object the first time its getter is called and keeps it.
+   *
+   * <p>A property of an {@code @AutoParse} class can then be a {@code Foo} or a
+   * {@code List<Foo>}: the getter returns a view of the stored value instead of a
+   * {@code JSONObject} or {@code JSONArray} copy of it, and the setter stores the object behind
+   * the view. See {@link AutoParseDocument}.
+   */
+  @Retention(RetentionPolicy.SOURCE) @Target(ElementType.TYPE)
+  @interface Document {
+  }
 }
\ No newline at end of file
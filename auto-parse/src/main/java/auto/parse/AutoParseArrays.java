@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts the lists of numbers that a {@link com.parse.ParseObject} stores to and from the
+ * {@code int[]}, {@code long[]} and {@code double[]} properties of {@code @AutoParse} classes.
+ * Generated getters decode a list once and keep the array until the list changes, so that reading
+ * thousands of numbers doesn't unbox each of them on every pass.
+ *
+ * <p>Every call to such a getter returns that same array, so it must not be modified: a write
+ * into it would show up in later reads but never reach the stored list, and would not be saved.
+ * To change the values, pass a new array to the setter. Likewise, the getter notices a new list
+ * or a list whose size changed, but not an element replaced in place in the stored list.
+ *
+ * <p>The second parameter of each {@code toArray} method only selects the array type, like the
+ * default value of the generated {@code _get} methods. Elements that are not numbers, such as
+ * nulls, decode as 0.
+ */
+public final class AutoParseArrays {
+  private AutoParseArrays() {}
+
+  public static int[] toArray(List<?> list, int[] type) {
+    if (list == null) {
+      return null;
+    }
+    int[] array = new int[list.size()];
+    for (int i = 0; i < array.length; i++) {
+      Object element = list.get(i);
+      array[i] = element instanceof Number ? ((Number) element).intValue() : 0;
+    }
+    return array;
+  }
+
+  public static long[] toArray(List<?> list, long[] type) {
+    if (list == null) {
+      return null;
+    }
+    long[] array = new long[list.size()];
+    for (int i = 0; i < array.length; i++) {
+      Object element = list.get(i);
+      array[i] = element instanceof Number ? ((Number) element).longValue() : 0L;
+    }
+    return array;
+  }
+
+  public static double[] toArray(List<?> list, double[] type) {
+    if (list == null) {
+      return null;
+    }
+    double[] array = new double[list.size()];
+    for (int i = 0; i < array.length; i++) {
+      Object element = list.get(i);
+      array[i] = element instanceof Number ? ((Number) element).doubleValue() : 0.0;
+    }
+    return array;
+  }
+
+  /** Returns a new list of the elements of {@code array}, to store in a ParseObject. */
+  public static List<Integer> asList(int[] array) {
+    if (array == null) {
+      return null;
+    }
+    List<Integer> list = new ArrayList<Integer>(array.length);
+    for (int value : array) {
+      list.add(value);
+    }
+    return list;
+  }
+
+  /** Returns a new list of the elements of {@code array}, to store in a ParseObject. */
+  public static List<Long> asList(long[] array) {
+    if (array == null) {
+      return null;
+    }
+    List<Long> list = new ArrayList<Long>(array.length);
+    for (long value : array) {
+      list.add(value);
+    }
+    return list;
+  }
+
+  /** Returns a new list of the elements of {@code array}, to store in a ParseObject. */
+  public static List<Double> asList(double[] array) {
+    if (array == null) {
+      return null;
+    }
+    List<Double> list = new ArrayList<Double>(array.length);
+    for (double value : array) {
+      list.add(value);
+    }
+    return list;
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse;
+
+import com.parse.ParseException;
+import com.parse.ParseObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Saves or fetches large lists of objects in fixed-size chunks, with at most a bounded number of
+ * chunks in flight at once. It takes lists of any {@code @AutoParse} class: <pre>
+ *
+ *   AutoParseBatch.saveAllChunked(people, 50, 4);</pre>
+ *
+ * <p>The calling thread submits chunks to the executor and blocks once {@code maxInFlight} chunks
+ * are outstanding, so a slow server slows down the producer instead of queueing the whole list.
+ * Every chunk is attempted even if an earlier one failed; failures are reported per chunk to the
+ * {@link Listener}, with a runtime exception from the request wrapped in a ParseException.
+ */
+public final class AutoParseBatch {
+  private AutoParseBatch() {}
+
+  /**
+   * Receives per-chunk progress. Callbacks are invoked on the executor threads, possibly
+   * concurrently, so implementations must be thread-safe.
+   */
+  public interface Listener<T> {
+    /**
+     * Called after the chunk with the given index has been saved or fetched.
+     *
+     * @param completedChunks the number of chunks that have finished so far, including failed ones
+     */
+    void onChunkCompleted(
+        int chunk, List<? extends T> objects, int completedChunks, int totalChunks);
+
+    void onChunkFailed(int chunk, List<? extends T> objects, ParseException e);
+  }
+
+  // The operation applied to each chunk.
+  interface ChunkOperation<T> {
+    void run(List<T> chunk) throws ParseException;
+  }
+
+  private static volatile Executor defaultExecutor;
+
+  /**
+   * Sets the executor used by the methods that do not take one explicitly. By default a shared
+   * pool of daemon threads is used.
+   */
+  public static void setDefaultExecutor(Executor executor) {
+    defaultExecutor = executor;
+  }
+
+  static Executor defaultExecutor() {
+    Executor executor = defaultExecutor;
+    if (executor == null) {
+      synchronized (AutoParseBatch.class) {
+        if (defaultExecutor == null) {
+          defaultExecutor = newDaemonPool();
+        }
+        executor = defaultExecutor;
+      }
+    }
+    return executor;
+  }
+
+  private static ExecutorService newDaemonPool() {
+    final AtomicInteger count = new AtomicInteger();
+    return Executors.newCachedThreadPool(new ThreadFactory() {
+      @Override public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "auto-parse-batch-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  public static <T extends ParseObject> boolean saveAllChunked(List<T> objects, int chunkSize,
+      int maxInFlight) throws InterruptedException {
+    return saveAllChunked(objects, chunkSize, maxInFlight, defaultExecutor(), null);
+  }
+
+  /**
+   * Saves {@code objects} with one {@link ParseObject#saveAll} call per chunk.
+   *
+   * @return true if every chunk was saved
+   */
+  public static <T extends ParseObject> boolean saveAllChunked(List<T> objects, int chunkSize,
+      int maxInFlight, Executor executor, Listener<? super T> listener)
+      throws InterruptedException {
+    return runChunked(objects, chunkSize, maxInFlight, executor, new ChunkOperation<T>() {
+      @Override public void run(List<T> chunk) throws ParseException {
+        AutoParseMetrics.saveAll(chunk);
+      }
+    }, listener);
+  }
+
+  public static <T extends ParseObject> boolean fetchAllChunked(List<T> objects, int chunkSize,
+      int maxInFlight) throws InterruptedException {
+    return fetchAllChunked(objects, chunkSize, maxInFlight, defaultExecutor(), null);
+  }
+
+  /**
+   * Fetches {@code objects} in place with one {@link ParseObject#fetchAll} call per chunk.
+   *
+   * @return true if every chunk was fetched
+   */
+  public static <T extends ParseObject> boolean fetchAllChunked(List<T> objects, int chunkSize,
+      int maxInFlight, Executor executor, Listener<? super T> listener)
+      throws InterruptedException {
+    return runChunked(objects, chunkSize, maxInFlight, executor, new ChunkOperation<T>() {
+      @Override public void run(List<T> chunk) throws ParseException {
+        AutoParseMetrics.fetchAll(chunk, false);
+      }
+    }, listener);
+  }
+
+  static <T> boolean runChunked(List<T> objects, int chunkSize, int maxInFlight,
+      Executor executor, final ChunkOperation<T> operation, final Listener<? super T> listener)
+      throws InterruptedException {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+    }
+    if (maxInFlight <= 0) {
+      throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+    }
+    final int totalChunks = (objects.size() + chunkSize - 1) / chunkSize;
+    final Semaphore inFlight = new Semaphore(maxInFlight);
+    final CountDownLatch done = new CountDownLatch(totalChunks);
+    final AtomicInteger completed = new AtomicInteger();
+    final AtomicInteger failed = new AtomicInteger();
+    for (int i = 0; i < totalChunks; i++) {
+      final int index = i;
+      // Copy the chunk so that callers may reuse or mutate their list once we return.
+      final List<T> chunk = Collections.unmodifiableList(new ArrayList<T>(
+          objects.subList(i * chunkSize, Math.min(objects.size(), (i + 1) * chunkSize))));
+      inFlight.acquire();
+      Runnable task = new Runnable() {
+        @Override public void run() {
+          try {
+            ParseException failure = null;
+            try {
+              operation.run(chunk);
+            } catch (ParseException e) {
+              failure = e;
+            } catch (RuntimeException e) {
+              // Report it like a failed request instead of letting it kill the executor thread.
+              failure = new ParseException(e);
+            }
+            int completedChunks = completed.incrementAndGet();
+            if (failure != null) {
+              failed.incrementAndGet();
+            }
+            if (listener != null) {
+              if (failure == null) {
+                listener.onChunkCompleted(index, chunk, completedChunks, totalChunks);
+              } else {
+                listener.onChunkFailed(index, chunk, failure);
+              }
+            }
+          } finally {
+            inFlight.release();
+            done.countDown();
+          }
+        }
+      };
+      try {
+        executor.execute(task);
+      } catch (RuntimeException e) {
+        inFlight.release();
+        throw e;
+      }
+    }
+    done.await();
+    return failed.get() == 0;
+  }
+}
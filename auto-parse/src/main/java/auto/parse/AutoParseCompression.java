@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflates and inflates the values of {@link AutoParse.Compressed} properties. Every property keeps
+ * one stored type, since a Parse column accepts only one:
+ *
+ * <ul>
+ * <li>A {@code byte[]} is always stored as bytes, starting with the magic bytes
+ * {@code AC 50 5A 01} and a marker: {@link #RAW} if the rest is the value itself, or {@link #DEFLATED} if it is
+ * followed by the length of the value, in four bytes, and the value deflated.
+ * <li>A {@code String} is always stored as a string. A value that is too short to compress, or
+ * that doesn't get smaller, is stored as it is. Otherwise its UTF-8 bytes are stored in the form
+ * above, Base64-encoded, after {@link #STRING_PREFIX}. A value that starts with the prefix itself
+ * is always encoded, so that it reads back as it was.
+ * </ul>
+ *
+ * <p>Stored values without the magic bytes or the prefix were stored before the property was
+ * compressed, and are returned as they are. The second parameter of each {@code inflate} method
+ * only selects the type of the value, like the default value of the generated {@code _get}
+ * methods.
+ */
+public final class AutoParseCompression {
+  public static final byte RAW = 0;
+  public static final byte DEFLATED = 1;
+
+  /** The prefix of every encoded {@code String}, starting with a private use character. */
+  public static final String STRING_PREFIX = "\uE000APZ:";
+
+  // The bytes that every stored byte[] starts with.
+  private static final byte[] MAGIC = {(byte) 0xAC, 'P', 'Z', 1};
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int MARKER = MAGIC.length;
+  private static final int HEADER_SIZE = MARKER + 5;
+  // Deflate can't produce more than 1032 bytes from each byte it reads.
+  private static final int MAX_RATIO = 1032;
+  private static final char[] BASE64 =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+  private AutoParseCompression() {}
+
+  /** Returns the stored form of {@code value}, deflated if it has at least threshold bytes. */
+  public static byte[] deflate(byte[] value, int threshold) {
+    if (value == null) {
+      return null;
+    }
+    byte[] deflated = value.length >= threshold ? deflated(value) : null;
+    if (deflated != null) {
+      return deflated;
+    }
+    byte[] stored = new byte[value.length + MARKER + 1];
+    System.arraycopy(MAGIC, 0, stored, 0, MARKER);
+    stored[MARKER] = RAW;
+    System.arraycopy(value, 0, stored, MARKER + 1, value.length);
+    return stored;
+  }
+
+  /**
+   * Returns the stored form of {@code value}: the string itself if its UTF-8 encoding has fewer
+   * than threshold bytes or doesn't get smaller, and otherwise the encoded deflated bytes.
+   */
+  public static String deflate(String value, int threshold) {
+    if (value == null) {
+      return null;
+    }
+    boolean escape = value.startsWith(STRING_PREFIX);
+    if (!escape && value.length() < threshold / 3) {
+      // Too short to reach the threshold even if every character takes three bytes.
+      return value;
+    }
+    byte[] bytes = value.getBytes(UTF_8);
+    if (!escape && bytes.length < threshold) {
+      return value;
+    }
+    String encoded = STRING_PREFIX + encodeBase64(deflate(bytes, escape ? 0 : threshold));
+    return escape || encoded.length() < value.length() ? encoded : value;
+  }
+
+  /**
+   * Returns the value whose stored form is {@code stored}. Bytes that don't start with the magic
+   * bytes were stored before the property was compressed, and are returned as they are.
+   *
+   * @throws IllegalArgumentException if the stored form is corrupt
+   */
+  public static byte[] inflate(Object stored, byte[] type) {
+    if (!(stored instanceof byte[])) {
+      return null;
+    }
+    byte[] bytes = (byte[]) stored;
+    byte[] value = decode(bytes);
+    return value != null ? value : bytes;
+  }
+
+  /**
+   * Returns the value whose stored form is {@code stored}. Strings that aren't encoded were stored
+   * before the property was compressed, and are returned as they are.
+   *
+   * @throws IllegalArgumentException if the stored form is corrupt
+   */
+  public static String inflate(Object stored, String type) {
+    if (!(stored instanceof String)) {
+      return null;
+    }
+    String string = (String) stored;
+    if (!string.startsWith(STRING_PREFIX)) {
+      return string;
+    }
+    byte[] bytes = decodeBase64(string, STRING_PREFIX.length());
+    byte[] value = bytes != null ? decode(bytes) : null;
+    return value != null ? new String(value, UTF_8) : string;
+  }
+
+  // The value in the stored form, or null if the bytes don't start with the magic bytes.
+  private static byte[] decode(byte[] stored) {
+    if (stored.length <= MARKER) {
+      return null;
+    }
+    for (int i = 0; i < MARKER; i++) {
+      if (stored[i] != MAGIC[i]) {
+        return null;
+      }
+    }
+    switch (stored[MARKER]) {
+      case RAW:
+        return Arrays.copyOfRange(stored, MARKER + 1, stored.length);
+      case DEFLATED:
+        return inflated(stored);
+      default:
+        return null;
+    }
+  }
+
+  // The DEFLATED form of value, or null if it isn't smaller than the RAW form.
+  private static byte[] deflated(byte[] value) {
+    Deflater deflater = new Deflater();
+    try {
+      deflater.setInput(value);
+      deflater.finish();
+      byte[] stored = new byte[value.length + MARKER + 1];
+      System.arraycopy(MAGIC, 0, stored, 0, MARKER);
+      stored[MARKER] = DEFLATED;
+      stored[MARKER + 1] = (byte) (value.length >>> 24);
+      stored[MARKER + 2] = (byte) (value.length >>> 16);
+      stored[MARKER + 3] = (byte) (value.length >>> 8);
+      stored[MARKER + 4] = (byte) value.length;
+      int size = HEADER_SIZE;
+      while (!deflater.finished() && size < stored.length) {
+        size += deflater.deflate(stored, size, stored.length - size);
+      }
+      return deflater.finished() ? Arrays.copyOf(stored, size) : null;
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private static byte[] inflated(byte[] stored) {
+    if (stored.length < HEADER_SIZE) {
+      throw new IllegalArgumentException("Compressed value has no length");
+    }
+    int length = (stored[MARKER + 1] & 0xff) << 24 | (stored[MARKER + 2] & 0xff) << 16
+        | (stored[MARKER + 3] & 0xff) << 8 | (stored[MARKER + 4] & 0xff);
+    if (length < 0) {
+      throw new IllegalArgumentException("Compressed value has a negative length: " + length);
+    }
+    // The length comes from the stored value, so check it before allocating that much.
+    if (length > (long) (stored.length - HEADER_SIZE) * MAX_RATIO) {
+      throw new IllegalArgumentException("Compressed value is corrupt: " + length
+          + " bytes can't inflate from " + (stored.length - HEADER_SIZE));
+    }
+    byte[] value = new byte[length];
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(stored, HEADER_SIZE, stored.length - HEADER_SIZE);
+      int size = 0;
+      while (size < length && !inflater.finished()) {
+        int inflated = inflater.inflate(value, size, length - size);
+        if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        size += inflated;
+      }
+      if (size != length) {
+        throw new IllegalArgumentException(
+            "Compressed value is corrupt: expected " + length + " bytes, inflated " + size);
+      }
+      return value;
+    } catch (DataFormatException e) {
+      throw new IllegalArgumentException("Compressed value is corrupt", e);
+    } finally {
+      inflater.end();
+    }
+  }
+
+  // Base64 with padding, as in RFC 4648. Android's android.util.Base64 is not available to plain
+  // JVM tests, and java.util.Base64 needs Java 8.
+  static String encodeBase64(byte[] bytes) {
+    char[] chars = new char[(bytes.length + 2) / 3 * 4];
+    int c = 0;
+    for (int i = 0; i < bytes.length; i += 3) {
+      int remaining = bytes.length - i;
+      int group = (bytes[i] & 0xff) << 16
+          | (remaining > 1 ? (bytes[i + 1] & 0xff) << 8 : 0)
+          | (remaining > 2 ? bytes[i + 2] & 0xff : 0);
+      chars[c++] = BASE64[group >>> 18];
+      chars[c++] = BASE64[group >>> 12 & 0x3f];
+      chars[c++] = remaining > 1 ? BASE64[group >>> 6 & 0x3f] : '=';
+      chars[c++] = remaining > 2 ? BASE64[group & 0x3f] : '=';
+    }
+    return new String(chars);
+  }
+
+  // Decodes the Base64 in s from start on, or returns null if it isn't valid Base64.
+  static byte[] decodeBase64(String s, int start) {
+    int length = s.length() - start;
+    if (length % 4 != 0) {
+      return null;
+    }
+    int padding = 0;
+    if (length > 0 && s.charAt(s.length() - 1) == '=') {
+      padding = s.charAt(s.length() - 2) == '=' ? 2 : 1;
+    }
+    byte[] bytes = new byte[length / 4 * 3 - padding];
+    int b = 0;
+    for (int i = start; i < s.length(); i += 4) {
+      int group = 0;
+      for (int j = 0; j < 4; j++) {
+        char ch = s.charAt(i + j);
+        int digit;
+        if (ch == '=' && i + 4 == s.length() && j >= 4 - padding) {
+          digit = 0;
+        } else {
+          digit = base64Digit(ch);
+          if (digit < 0) {
+            return null;
+          }
+        }
+        group = group << 6 | digit;
+      }
+      for (int shift = 16; shift >= 0 && b < bytes.length; shift -= 8) {
+        bytes[b++] = (byte) (group >>> shift);
+      }
+    }
+    return bytes;
+  }
+
+  private static int base64Digit(char ch) {
+    if (ch >= 'A' && ch <= 'Z') {
+      return ch - 'A';
+    } else if (ch >= 'a' && ch <= 'z') {
+      return ch - 'a' + 26;
+    } else if (ch >= '0' && ch <= '9') {
+      return ch - '0' + 52;
+    } else if (ch == '+') {
+      return 62;
+    } else if (ch == '/') {
+      return 63;
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse;
+
+import com.parse.ParseException;
+import com.parse.ParseObject;
+import com.parse.ParseQuery;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Streams the results of a query page by page. Pages are selected with keyset pagination on
+ * {@code (createdAt, objectId)} rather than {@code setSkip}, so every page costs the server the
+ * same regardless of how deep into the results it is. While the caller works through one page the
+ * next one is already being fetched in the background, and only the current and next pages are
+ * held in memory. Rows are wrapped into the {@code @AutoParse} class only as {@link #next()}
+ * returns them.
+ *
+ * <p>After the first page, the queries of the {@link QueryFactory} become the sub queries of an
+ * {@code or} query, so they must not set an ordering, a limit or includes; pass includes to the
+ * cursor instead. Rows without a {@code createdAt}, such as unsaved objects in the local
+ * datastore, cannot be paged past: they are returned where they appear, and a full page of them
+ * ends the cursor with a {@link CursorException}. A cursor is single-use and not thread-safe.
+ * Call {@link #close()} if you stop before the end, so that the prefetch is abandoned.
+ */
+public final class AutoParseCursor<T> implements Iterator<T>, Iterable<T> {
+  /** Creates a fresh query, with any constraints, for each page. */
+  public interface QueryFactory {
+    ParseQuery<? extends ParseObject> newQuery();
+  }
+
+  /** Thrown from {@link #hasNext()} or {@link #next()} when fetching a page failed. */
+  @SuppressWarnings("serial")
+  public static class CursorException extends RuntimeException {
+    CursorException(Throwable cause) {
+      super(cause);
+    }
+  }
+
+  // Loads the rows that sort after the given key, or the first rows if the key is null; tests
+  // replace it to avoid the network.
+  interface PageLoader {
+    List<? extends ParseObject> load(Date lastCreatedAt, String lastObjectId, int limit)
+        throws ParseException;
+  }
+
+  private final PageLoader loader;
+  private final AutoParseWrapper<T> wrapper;
+  private final int pageSize;
+  private final Executor executor;
+
+  private List<? extends ParseObject> page = Collections.emptyList();
+  private int index;
+  private FutureTask<List<? extends ParseObject>> nextPage;
+  private boolean lastPage;
+  private boolean closed;
+  // The key of the last row seen.
+  private Date lastCreatedAt;
+  private String lastObjectId;
+
+  /**
+   * Creates a cursor over every row of the Parse class {@code className}, whose page queries
+   * include the pointers at {@code includes}, such as
+   * {@code new AutoParseCursor<Person>("Person", includes, AutoParse_Person.WRAPPER, 100)}.
+   */
+  public AutoParseCursor(String className, Collection<String> includes,
+      AutoParseWrapper<T> wrapper, int pageSize) {
+    this(queriesOf(className), includes, wrapper, pageSize, AutoParseBatch.defaultExecutor());
+  }
+
+  public AutoParseCursor(QueryFactory queryFactory, AutoParseWrapper<T> wrapper, int pageSize) {
+    this(queryFactory, wrapper, pageSize, AutoParseBatch.defaultExecutor());
+  }
+
+  public AutoParseCursor(QueryFactory queryFactory, AutoParseWrapper<T> wrapper,
+      int pageSize, Executor executor) {
+    this(queryFactory, Collections.<String>emptyList(), wrapper, pageSize, executor);
+  }
+
+  /** Creates a cursor whose page queries include the pointers at {@code includes}. */
+  public AutoParseCursor(QueryFactory queryFactory, Collection<String> includes,
+      AutoParseWrapper<T> wrapper, int pageSize) {
+    this(queryFactory, includes, wrapper, pageSize, AutoParseBatch.defaultExecutor());
+  }
+
+  public AutoParseCursor(final QueryFactory queryFactory, final Collection<String> includes,
+      AutoParseWrapper<T> wrapper, int pageSize, Executor executor) {
+    this(new PageLoader() {
+      @Override public List<? extends ParseObject> load(
+          Date lastCreatedAt, String lastObjectId, int limit) throws ParseException {
+        ParseQuery<ParseObject> query;
+        if (lastCreatedAt == null) {
+          query = newQuery(queryFactory);
+        } else {
+          // (createdAt > last) OR (createdAt == last AND objectId > lastId)
+          ParseQuery<ParseObject> later = newQuery(queryFactory);
+          later.whereGreaterThan("createdAt", lastCreatedAt);
+          ParseQuery<ParseObject> tied = newQuery(queryFactory);
+          tied.whereEqualTo("createdAt", lastCreatedAt);
+          tied.whereGreaterThan("objectId", lastObjectId);
+          List<ParseQuery<ParseObject>> either = new ArrayList<ParseQuery<ParseObject>>(2);
+          either.add(later);
+          either.add(tied);
+          query = ParseQuery.or(either);
+        }
+        for (String include : includes) {
+          query.include(include);
+        }
+        query.orderByAscending("createdAt");
+        query.addAscendingOrder("objectId");
+        query.setLimit(limit);
+        if (!AutoParseMetrics.ENABLED) {
+          return query.find();
+        }
+        AutoParseMetrics metrics = AutoParseMetrics.get();
+        Object begun = metrics.begin(AutoParseMetrics.Operation.QUERY_PAGE);
+        long start = System.nanoTime();
+        List<? extends ParseObject> rows = query.find();
+        metrics.onQueryPage(begun, query.getClassName(), rows.size(),
+            AutoParseMetrics.estimateBytes(rows), System.nanoTime() - start);
+        return rows;
+      }
+    }, wrapper, pageSize, executor);
+  }
+
+  AutoParseCursor(PageLoader loader, AutoParseWrapper<T> wrapper, int pageSize,
+      Executor executor) {
+    if (pageSize <= 0) {
+      throw new IllegalArgumentException("pageSize must be positive: " + pageSize);
+    }
+    this.loader = loader;
+    this.wrapper = wrapper;
+    this.pageSize = pageSize;
+    this.executor = executor;
+    this.nextPage = fetch(null, null);
+  }
+
+  private static QueryFactory queriesOf(final String className) {
+    return new QueryFactory() {
+      @Override public ParseQuery<ParseObject> newQuery() {
+        return ParseQuery.getQuery(className);
+      }
+    };
+  }
+
+  @SuppressWarnings("unchecked")
+  private static ParseQuery<ParseObject> newQuery(QueryFactory queryFactory) {
+    return (ParseQuery<ParseObject>) queryFactory.newQuery();
+  }
+
+  private FutureTask<List<? extends ParseObject>> fetch(
+      final Date lastCreatedAt, final String lastObjectId) {
+    FutureTask<List<? extends ParseObject>> task = new FutureTask<List<? extends ParseObject>>(
+        new Callable<List<? extends ParseObject>>() {
+          @Override public List<? extends ParseObject> call() throws ParseException {
+            return loader.load(lastCreatedAt, lastObjectId, pageSize);
+          }
+        });
+    executor.execute(task);
+    return task;
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (closed) {
+      return false;
+    }
+    while (index >= page.size()) {
+      if (lastPage) {
+        return false;
+      }
+      advance();
+    }
+    return true;
+  }
+
+  // Waits for the prefetched page, makes it current, and starts fetching the one after it.
+  private void advance() {
+    try {
+      page = nextPage.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CursorException(e);
+    } catch (ExecutionException e) {
+      throw new CursorException(e.getCause());
+    }
+    index = 0;
+    nextPage = null;
+    lastPage = page.size() < pageSize;
+    if (lastPage) {
+      return;
+    }
+    boolean moved = false;
+    for (int i = page.size() - 1; i >= 0; i--) {
+      ParseObject row = page.get(i);
+      if (row.getCreatedAt() != null && row.getObjectId() != null) {
+        lastCreatedAt = row.getCreatedAt();
+        lastObjectId = row.getObjectId();
+        moved = true;
+        break;
+      }
+    }
+    if (moved) {
+      nextPage = fetch(lastCreatedAt, lastObjectId);
+    } else {
+      // Let the caller have this page, and fail when it asks for the next one.
+      nextPage = new FutureTask<List<? extends ParseObject>>(
+          new Callable<List<? extends ParseObject>>() {
+            @Override public List<? extends ParseObject> call() {
+              throw new IllegalStateException(
+                  "Cannot page past a full page of rows without a createdAt");
+            }
+          });
+      nextPage.run();
+    }
+  }
+
+  @Override
+  public T next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return wrapper.wrap(page.get(index++));
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  /** Returns this cursor, so that it can be used in a for-each loop exactly once. */
+  @Override
+  public Iterator<T> iterator() {
+    return this;
+  }
+
+  /** Abandons any prefetch in progress and releases the current page. */
+  public void close() {
+    closed = true;
+    if (nextPage != null) {
+      nextPage.cancel(true);
+      nextPage = null;
+    }
+    page = Collections.emptyList();
+  }
+}
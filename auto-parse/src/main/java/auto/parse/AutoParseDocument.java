@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse;
+
+import com.parse.ParseObject;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * The base of the classes generated for {@link AutoParse.Document} interfaces. An instance reads
+ * the fields of one embedded JSON object as they are asked for, straight from the map that
+ * ParseObject keeps it in, and the generated getters keep what they read. Unlike
+ * {@code ParseObject.getJSONObject}, nothing is copied into a {@code JSONObject}, so reading one
+ * field of a large document costs one map lookup.
+ *
+ * <p>ParseObject stores embedded objects as maps and arrays as lists, converting any
+ * {@code JSONObject} or {@code JSONArray} that is put into it. Like the object it came from, a
+ * document is not thread-safe.
+ */
+public abstract class AutoParseDocument {
+  /** Turns a stored value into an element of a typed list or a document. */
+  public interface Element<T> {
+    /** Returns the value for {@code stored}, or null if it has the wrong type. */
+    T convert(Object stored);
+  }
+
+  public static final Element<String> STRINGS = new Element<String>() {
+    @Override public String convert(Object stored) {
+      return stored instanceof String ? (String) stored : null;
+    }
+  };
+
+  public static final Element<Boolean> BOOLEANS = new Element<Boolean>() {
+    @Override public Boolean convert(Object stored) {
+      return stored instanceof Boolean ? (Boolean) stored : null;
+    }
+  };
+
+  public static final Element<Integer> INTEGERS = new Element<Integer>() {
+    @Override public Integer convert(Object stored) {
+      return stored instanceof Number ? (Integer) ((Number) stored).intValue() : null;
+    }
+  };
+
+  public static final Element<Long> LONGS = new Element<Long>() {
+    @Override public Long convert(Object stored) {
+      return stored instanceof Number ? (Long) ((Number) stored).longValue() : null;
+    }
+  };
+
+  public static final Element<Double> DOUBLES = new Element<Double>() {
+    @Override public Double convert(Object stored) {
+      return stored instanceof Number ? (Double) ((Number) stored).doubleValue() : null;
+    }
+  };
+
+  private final Map<?, ?> source;
+
+  protected AutoParseDocument(Map<?, ?> source) {
+    this.source = source;
+  }
+
+  /** The map that this document reads from, which is what a setter stores for it. */
+  public final Map<?, ?> source() {
+    return source;
+  }
+
+  /**
+   * Returns {@code stored}, the value of {@code key} in {@code owner}, as the type that
+   * {@code element} converts to, or null if it has the wrong type. Documents are read-only, so
+   * {@code owner} and {@code key} are only there to match the views of maps and lists of objects.
+   */
+  public static <T> T view(ParseObject owner, String key, Object stored, Element<T> element) {
+    return element.convert(stored);
+  }
+
+  /**
+   * Returns an element that converts a stored list into a read-only view, which converts each
+   * element with {@code element} when it is first read and keeps it.
+   */
+  public static <T> Element<List<T>> listOf(final Element<T> element) {
+    return new Element<List<T>>() {
+      @Override public List<T> convert(Object stored) {
+        return stored instanceof List ? new ListView<T>((List<?>) stored, element) : null;
+      }
+    };
+  }
+
+  /**
+   * Returns what to store for {@code value}: the map behind a document, the list behind a view
+   * from {@link #listOf}, a copy of a list with the map behind each document, or otherwise
+   * {@code value} itself.
+   */
+  public static Object toStored(Object value) {
+    if (value instanceof AutoParseDocument) {
+      return ((AutoParseDocument) value).source;
+    }
+    if (value instanceof ListView) {
+      return ((ListView<?>) value).stored;
+    }
+    if (value instanceof List) {
+      List<?> list = (List<?>) value;
+      List<Object> copy = new ArrayList<Object>(list.size());
+      for (Object element : list) {
+        copy.add(toStored(element));
+      }
+      return copy;
+    }
+    return value;
+  }
+
+  protected final Object get(String key) {
+    return source.get(key);
+  }
+
+  protected final String getString(String key) {
+    return STRINGS.convert(source.get(key));
+  }
+
+  protected final boolean getBoolean(String key) {
+    return Boolean.TRUE.equals(source.get(key));
+  }
+
+  protected final int getInt(String key) {
+    Object value = source.get(key);
+    return value instanceof Number ? ((Number) value).intValue() : 0;
+  }
+
+  protected final long getLong(String key) {
+    Object value = source.get(key);
+    return value instanceof Number ? ((Number) value).longValue() : 0L;
+  }
+
+  protected final double getDouble(String key) {
+    Object value = source.get(key);
+    return value instanceof Number ? ((Number) value).doubleValue() : 0.0;
+  }
+
+  @Override
+  public String toString() {
+    return String.valueOf(source);
+  }
+
+  private static final class ListView<T> extends AbstractList<T> implements RandomAccess {
+    // Marks an element that wasn't converted yet, since null is a valid result.
+    private static final Object UNREAD = new Object();
+
+    private final List<?> stored;
+    private final Element<T> element;
+    private final Object[] converted;
+
+    ListView(List<?> stored, Element<T> element) {
+      this.stored = stored;
+      this.element = element;
+      this.converted = new Object[stored.size()];
+      Arrays.fill(converted, UNREAD);
+    }
+
+    @Override
+    public int size() {
+      return converted.length;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+      Object value = converted[index];
+      if (value == UNREAD) {
+        value = element.convert(stored.get(index));
+        converted[index] = value;
+      }
+      return (T) value;
+    }
+  }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse;
+
+/**
+ * Implemented by an enum to have its values stored as an int code instead of by name, so that
+ * constants can be renamed without breaking stored objects. Codes must be distinct, and should
+ * not change once objects have been saved with them.
+ *
+ * <pre>
+ *   public enum HeightBucket implements AutoParseEnumCode {
+ *     SHORT(1), AVERAGE(2), TALL(3);
+ *
+ *     private final int code;
+ *
+ *     HeightBucket(int code) {
+ *       this.code = code;
+ *     }
+ *
+ *     &#64;Override public int code() {
+ *       return code;
+ *     }
+ *   }</pre>
+ */
+public interface AutoParseEnumCode {
+  int code();
+}
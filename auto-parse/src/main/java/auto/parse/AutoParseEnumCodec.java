@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse;
+
+import java.util.Arrays;
+
+/**
+ * Converts the values of an enum-typed property to and from what is stored in the
+ * {@link com.parse.ParseObject}: the constant's {@link Enum#name name}, or its
+ * {@link AutoParseEnumCode#code code} if the enum implements {@link AutoParseEnumCode}. Every
+ * generated class has one codec per enum property, and its getter decodes through tables that
+ * the codec builds once, without calling {@link Enum#valueOf} or allocating.
+ *
+ * <p>Stored values that don't match a constant, including names of constants that have since
+ * been removed, decode to the default value that the getter declares.
+ */
+public final class AutoParseEnumCodec<E extends Enum<E>> {
+  // Codes from 0 up to this are decoded by indexing an array; others by binary search.
+  private static final int MAX_TABLE_SIZE = 256;
+
+  private final E[] constants;
+  private final String[] names;
+  private final Integer[] codes;  // By ordinal, or null if the enum is stored by name.
+  private final E[] byCode;  // Indexed by code, if all codes are small enough.
+  private final int[] sortedCodes;
+  private final E[] bySortedCode;
+
+  private AutoParseEnumCodec(Class<E> type) {
+    constants = type.getEnumConstants();
+    names = new String[constants.length];
+    for (E constant : constants) {
+      names[constant.ordinal()] = constant.name();
+    }
+    if (!AutoParseEnumCode.class.isAssignableFrom(type)) {
+      codes = null;
+      byCode = null;
+      sortedCodes = null;
+      bySortedCode = null;
+      return;
+    }
+    codes = new Integer[constants.length];
+    sortedCodes = new int[constants.length];
+    int minCode = 0;
+    int maxCode = -1;
+    for (E constant : constants) {
+      int code = ((AutoParseEnumCode) constant).code();
+      codes[constant.ordinal()] = code;
+      sortedCodes[constant.ordinal()] = code;
+      minCode = Math.min(minCode, code);
+      maxCode = Math.max(maxCode, code);
+    }
+    Arrays.sort(sortedCodes);
+    bySortedCode = Arrays.copyOf(constants, constants.length);
+    for (int i = 1; i < sortedCodes.length; i++) {
+      if (sortedCodes[i] == sortedCodes[i - 1]) {
+        throw new IllegalArgumentException(
+            type.getName() + " has more than one constant with code " + sortedCodes[i]);
+      }
+    }
+    for (E constant : constants) {
+      bySortedCode[Arrays.binarySearch(sortedCodes, codes[constant.ordinal()])] = constant;
+    }
+    if (minCode >= 0 && maxCode < MAX_TABLE_SIZE) {
+      byCode = Arrays.copyOf(constants, maxCode + 1);
+      Arrays.fill(byCode, null);
+      for (E constant : constants) {
+        byCode[codes[constant.ordinal()]] = constant;
+      }
+    } else {
+      byCode = null;
+    }
+  }
+
+  public static <E extends Enum<E>> AutoParseEnumCodec<E> of(Class<E> type) {
+    return new AutoParseEnumCodec<E>(type);
+  }
+
+  /** Returns what to store for {@code value}: its code or name, or null if it is null. */
+  public Object encode(E value) {
+    if (value == null) {
+      return null;
+    }
+    return codes != null ? codes[value.ordinal()] : names[value.ordinal()];
+  }
+
+  /**
+   * Returns the constant that {@code stored} encodes, or {@code defaultValue} if there is none.
+   * Names are accepted for enums stored by code too, so that objects saved before the enum
+   * implemented {@link AutoParseEnumCode} still decode.
+   */
+  public E decode(Object stored, E defaultValue) {
+    E value = null;
+    if (stored instanceof String) {
+      value = byName((String) stored);
+    } else if (stored instanceof Number && codes != null) {
+      long code = ((Number) stored).longValue();
+      if (code == (int) code && code == ((Number) stored).doubleValue()) {
+        value = byCode((int) code);
+      }
+    }
+    return value != null ? value : defaultValue;
+  }
+
+  private E byName(String name) {
+    // Values that this codec encoded are the constants' own name strings.
+    for (int i = 0; i < names.length; i++) {
+      if (names[i] == name) {
+        return constants[i];
+      }
+    }
+    for (int i = 0; i < names.length; i++) {
+      if (names[i].equals(name)) {
+        return constants[i];
+      }
+    }
+    return null;
+  }
+
+  private E byCode(int code) {
+    if (byCode != null) {
+      return code >= 0 && code < byCode.length ? byCode[code] : null;
+    }
+    int index = Arrays.binarySearch(sortedCodes, code);
+    return index >= 0 ? bySortedCode[index] : null;
+  }
+}
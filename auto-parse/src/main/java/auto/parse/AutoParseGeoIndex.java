@@ -0,0 +1,467 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse;
+
+import com.parse.ParseGeoPoint;
+import com.parse.ParseObject;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Finds cached objects near a point or inside a box without looking at every object. Points are
+ * kept in a grid of cells a fixed number of degrees wide, so a query only visits the cells it
+ * overlaps and tests the distance of the points in them.
+ *
+ * <p>The generated class of a model with a {@link ParseGeoPoint} property {@code location} has a
+ * static {@code setLocationIndex} method. Once an index is set, the generated setter of the
+ * property puts the object into it with its new location, and the static {@code indexLocation}
+ * method puts a list of objects, such as the results of a query, in at once. Objects made by the
+ * generated constructor that takes every property or read from a {@code Parcel} are left out
+ * until they are set or indexed.
+ *
+ * <p>The index only holds its objects weakly, so it doesn't keep a cache's objects alive after
+ * the cache drops them. A {@link ParseObject} with an objectId is indexed by it, so that two
+ * instances of the same row share one entry, which returns the one put last. Other objects are
+ * told apart by identity. An index made with the {@code WRAPPER} of the model, as in
+ * {@code new AutoParseGeoIndex<Place>(AutoParse_Place.WRAPPER)}, holds the row of each object
+ * instead, so every wrapper of a row shares its entry, and queries return the row wrapped.
+ *
+ * <p>An index is thread-safe: queries run concurrently with each other, and updates wait for
+ * them.
+ */
+public final class AutoParseGeoIndex<T> {
+  private static final double EARTH_RADIUS_KILOMETERS = 6371.0;
+  private static final double DEFAULT_CELL_DEGREES = 0.1;
+
+  private final AutoParseWrapper<T> wrapper;
+  private final double cellDegrees;
+  private final int columns;
+  private final Map<Long, Cell> cells = new HashMap<Long, Cell>();
+  private final Map<Object, Entry> entries = new HashMap<Object, Entry>();
+  private final ReferenceQueue<Object> collected = new ReferenceQueue<Object>();
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  // An indexed object, or its row if there is a wrapper, under its objectId or an IdentityKey of
+  // its row, and its cell.
+  private static final class Entry extends WeakReference<Object> {
+    final Object key;
+    final long cell;
+
+    Entry(Object object, Object key, long cell, ReferenceQueue<Object> queue) {
+      super(object, queue);
+      this.key = key;
+      this.cell = cell;
+    }
+  }
+
+  // The key of an object without an objectId, which doesn't keep it alive.
+  private static final class IdentityKey extends WeakReference<Object> {
+    private final int hashCode;
+
+    IdentityKey(Object object) {
+      super(object);
+      this.hashCode = System.identityHashCode(object);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (o == this) {
+        return true;
+      }
+      Object object = get();
+      return object != null && o instanceof IdentityKey && ((IdentityKey) o).get() == object;
+    }
+  }
+
+  // The points in one cell, packed into arrays. Removing a point moves the last one into its
+  // place.
+  private static final class Cell {
+    double[] latitudes = new double[4];
+    double[] longitudes = new double[4];
+    Entry[] entries = new Entry[4];
+    int size;
+
+    void add(Entry entry, double latitude, double longitude) {
+      if (size == entries.length) {
+        int capacity = size * 2;
+        latitudes = copyOf(latitudes, capacity);
+        longitudes = copyOf(longitudes, capacity);
+        Entry[] newEntries = new Entry[capacity];
+        System.arraycopy(entries, 0, newEntries, 0, size);
+        entries = newEntries;
+      }
+      latitudes[size] = latitude;
+      longitudes[size] = longitude;
+      entries[size] = entry;
+      size++;
+    }
+
+    void remove(Entry entry) {
+      for (int i = 0; i < size; i++) {
+        if (entries[i] == entry) {
+          size--;
+          latitudes[i] = latitudes[size];
+          longitudes[i] = longitudes[size];
+          entries[i] = entries[size];
+          entries[size] = null;
+          return;
+        }
+      }
+    }
+
+    private static double[] copyOf(double[] values, int capacity) {
+      double[] copy = new double[capacity];
+      System.arraycopy(values, 0, copy, 0, values.length);
+      return copy;
+    }
+  }
+
+  /** Creates an index with cells 0.1 degrees wide, about 11 km from north to south. */
+  public AutoParseGeoIndex() {
+    this(null, DEFAULT_CELL_DEGREES);
+  }
+
+  /**
+   * Creates an index with cells {@code cellDegrees} wide. Queries are fastest when a typical
+   * query covers a few cells.
+   */
+  public AutoParseGeoIndex(double cellDegrees) {
+    this(null, cellDegrees);
+  }
+
+  /** Creates an index with cells 0.1 degrees wide that finds the rows of wrappers. */
+  public AutoParseGeoIndex(AutoParseWrapper<T> wrapper) {
+    this(wrapper, DEFAULT_CELL_DEGREES);
+  }
+
+  /** Creates an index with cells {@code cellDegrees} wide that finds the rows of wrappers. */
+  public AutoParseGeoIndex(AutoParseWrapper<T> wrapper, double cellDegrees) {
+    if (!(cellDegrees > 0 && cellDegrees <= 180)) {
+      throw new IllegalArgumentException("cellDegrees must be in (0, 180]: " + cellDegrees);
+    }
+    this.wrapper = wrapper;
+    this.cellDegrees = cellDegrees;
+    this.columns = (int) Math.ceil(360 / cellDegrees) + 1;
+  }
+
+  /** Adds {@code object} at {@code point}, or moves it there if it is already indexed. */
+  public void put(T object, ParseGeoPoint point) {
+    if (point == null) {
+      remove(object);
+    } else {
+      put(object, point.getLatitude(), point.getLongitude());
+    }
+  }
+
+  /** Adds {@code object} at the given point, or moves it there if it is already indexed. */
+  public void put(T object, double latitude, double longitude) {
+    if (object == null) {
+      throw new NullPointerException("object");
+    }
+    checkPoint(latitude, longitude);
+    lock.writeLock().lock();
+    try {
+      expungeLocked();
+      putLocked(object, latitude, longitude);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Adds or moves each of {@code objects} to the point at the same position in {@code points},
+   * or removes it if that point is null. It takes the lock once, so it suits query results.
+   */
+  public void putAll(List<? extends T> objects, List<ParseGeoPoint> points) {
+    if (objects.size() != points.size()) {
+      throw new IllegalArgumentException(
+          objects.size() + " objects but " + points.size() + " points");
+    }
+    for (int i = 0; i < objects.size(); i++) {
+      if (objects.get(i) == null) {
+        throw new NullPointerException("objects[" + i + "]");
+      }
+      ParseGeoPoint point = points.get(i);
+      if (point != null) {
+        checkPoint(point.getLatitude(), point.getLongitude());
+      }
+    }
+    lock.writeLock().lock();
+    try {
+      expungeLocked();
+      for (int i = 0; i < objects.size(); i++) {
+        ParseGeoPoint point = points.get(i);
+        if (point == null) {
+          removeLocked(rowOf(objects.get(i)));
+        } else {
+          putLocked(objects.get(i), point.getLatitude(), point.getLongitude());
+        }
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Removes {@code object}, and returns whether it was indexed. */
+  public boolean remove(T object) {
+    lock.writeLock().lock();
+    try {
+      expungeLocked();
+      return removeLocked(rowOf(object));
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Returns the number of indexed objects, not counting those that were garbage collected. */
+  public int size() {
+    lock.writeLock().lock();
+    try {
+      expungeLocked();
+      return entries.size();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void clear() {
+    lock.writeLock().lock();
+    try {
+      cells.clear();
+      entries.clear();
+      expungeLocked();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the objects within {@code maxDistance} kilometers of {@code center}, like
+   * {@code ParseQuery.whereWithinKilometers}, in no particular order.
+   */
+  public List<T> withinKilometers(ParseGeoPoint center, double maxDistance) {
+    return withinKilometers(center.getLatitude(), center.getLongitude(), maxDistance);
+  }
+
+  /** Returns the objects within {@code maxDistance} kilometers of the given point. */
+  public List<T> withinKilometers(double latitude, double longitude, double maxDistance) {
+    checkPoint(latitude, longitude);
+    double radians = maxDistance / EARTH_RADIUS_KILOMETERS;
+    double latitudeDegrees = Math.toDegrees(radians);
+    double south = Math.max(-90, latitude - latitudeDegrees);
+    double north = Math.min(90, latitude + latitudeDegrees);
+    double west = -180;
+    double east = 180;
+    // Near a pole or for large distances every longitude may be in range.
+    double sinLongitude = Math.sin(radians) / Math.cos(Math.toRadians(latitude));
+    if (south > -90 && north < 90 && radians < Math.PI / 2 && sinLongitude < 1) {
+      double longitudeDegrees = Math.toDegrees(Math.asin(sinLongitude));
+      west = longitude - longitudeDegrees;
+      east = longitude + longitudeDegrees;
+      if (west < -180) {
+        west += 360;
+      }
+      if (east > 180) {
+        east -= 360;
+      }
+    }
+    List<T> results = new ArrayList<T>();
+    lock.readLock().lock();
+    try {
+      collect(south, west, north, east, latitude, longitude, radians, results);
+    } finally {
+      lock.readLock().unlock();
+    }
+    return results;
+  }
+
+  /**
+   * Returns the objects inside the box with the given corners, like
+   * {@code ParseQuery.whereWithinGeoBox}, in no particular order. A box whose western edge is
+   * east of its eastern edge crosses the 180th meridian.
+   */
+  public List<T> withinGeoBox(ParseGeoPoint southwest, ParseGeoPoint northeast) {
+    return withinGeoBox(southwest.getLatitude(), southwest.getLongitude(),
+        northeast.getLatitude(), northeast.getLongitude());
+  }
+
+  /** Returns the objects inside the box with the given edges. */
+  public List<T> withinGeoBox(double south, double west, double north, double east) {
+    checkPoint(south, west);
+    checkPoint(north, east);
+    if (south > north) {
+      throw new IllegalArgumentException(
+          "The southern edge " + south + " is north of the northern edge " + north);
+    }
+    List<T> results = new ArrayList<T>();
+    lock.readLock().lock();
+    try {
+      collect(south, west, north, east, 0, 0, -1, results);
+    } finally {
+      lock.readLock().unlock();
+    }
+    return results;
+  }
+
+  // Adds the points inside the box, and within radians of the center unless radians is negative.
+  // Visits the cells that overlap the box, or every cell if there are fewer of those.
+  private void collect(double south, double west, double north, double east,
+      double latitude, double longitude, double radians, List<T> results) {
+    boolean wraps = west > east;
+    int firstRow = row(south);
+    int lastRow = row(north);
+    int firstColumn = column(west);
+    int lastColumn = column(east);
+    long rowCount = lastRow - firstRow + 1;
+    long columnCount = wraps
+        ? columns - firstColumn + lastColumn + 1
+        : lastColumn - firstColumn + 1;
+    if (rowCount * columnCount > cells.size()) {
+      for (Cell cell : cells.values()) {
+        collect(cell, south, west, north, east, latitude, longitude, radians, results);
+      }
+      return;
+    }
+    for (int row = firstRow; row <= lastRow; row++) {
+      for (long i = 0; i < columnCount; i++) {
+        Cell cell = cells.get(key(row, (int) ((firstColumn + i) % columns)));
+        if (cell != null) {
+          collect(cell, south, west, north, east, latitude, longitude, radians, results);
+        }
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void collect(Cell cell, double south, double west, double north,
+      double east, double latitude, double longitude, double radians, List<T> results) {
+    boolean wraps = west > east;
+    for (int i = 0; i < cell.size; i++) {
+      double pointLatitude = cell.latitudes[i];
+      double pointLongitude = cell.longitudes[i];
+      boolean inBox = pointLatitude >= south && pointLatitude <= north
+          && (wraps
+              ? pointLongitude >= west || pointLongitude <= east
+              : pointLongitude >= west && pointLongitude <= east);
+      if (inBox && (radians < 0
+          || distanceInRadians(latitude, longitude, pointLatitude, pointLongitude) <= radians)) {
+        Object object = cell.entries[i].get();
+        if (object != null) {
+          results.add(wrapper != null ? wrapper.wrap((ParseObject) object) : (T) object);
+        }
+      }
+    }
+  }
+
+  // The haversine formula, as in ParseGeoPoint.distanceInRadiansTo.
+  static double distanceInRadians(double latitude1, double longitude1, double latitude2,
+      double longitude2) {
+    double latitude1Radians = Math.toRadians(latitude1);
+    double latitude2Radians = Math.toRadians(latitude2);
+    double sinHalfLatitude = Math.sin((latitude1Radians - latitude2Radians) / 2);
+    double sinHalfLongitude = Math.sin(Math.toRadians(longitude1 - longitude2) / 2);
+    double a = sinHalfLatitude * sinHalfLatitude
+        + Math.cos(latitude1Radians) * Math.cos(latitude2Radians)
+            * sinHalfLongitude * sinHalfLongitude;
+    return 2 * Math.asin(Math.sqrt(Math.min(1, a)));
+  }
+
+  private void putLocked(T object, double latitude, double longitude) {
+    Object row = rowOf(object);
+    removeLocked(row);
+    String objectId = objectIdOf(row);
+    Object key = objectId != null ? objectId : new IdentityKey(row);
+    long cellKey = key(row(latitude), column(longitude));
+    Cell cell = cells.get(cellKey);
+    if (cell == null) {
+      cell = new Cell();
+      cells.put(cellKey, cell);
+    }
+    Entry entry = new Entry(row, key, cellKey, collected);
+    cell.add(entry, latitude, longitude);
+    entries.put(key, entry);
+  }
+
+  // Removes the entries of row, under its objectId and under the row itself in case it was put
+  // before it was saved.
+  private boolean removeLocked(Object row) {
+    boolean removed = removeEntryLocked(entries.get(new IdentityKey(row)));
+    String objectId = objectIdOf(row);
+    return objectId != null && removeEntryLocked(entries.get(objectId)) || removed;
+  }
+
+  private Object rowOf(T object) {
+    return wrapper != null ? wrapper.unwrap(object) : object;
+  }
+
+  private static String objectIdOf(Object row) {
+    return row instanceof ParseObject ? ((ParseObject) row).getObjectId() : null;
+  }
+
+  private boolean removeEntryLocked(Entry entry) {
+    if (entry == null) {
+      return false;
+    }
+    entries.remove(entry.key);
+    Cell cell = cells.get(entry.cell);
+    cell.remove(entry);
+    if (cell.size == 0) {
+      cells.remove(entry.cell);
+    }
+    return true;
+  }
+
+  // Drops the entries of objects that were garbage collected.
+  private void expungeLocked() {
+    for (Reference<?> reference; (reference = collected.poll()) != null; ) {
+      Entry entry = (Entry) reference;
+      if (entries.get(entry.key) == entry) {
+        removeEntryLocked(entry);
+      }
+    }
+  }
+
+  private int row(double latitude) {
+    return (int) Math.floor((latitude + 90) / cellDegrees);
+  }
+
+  private int column(double longitude) {
+    return (int) Math.floor((longitude + 180) / cellDegrees);
+  }
+
+  private long key(int row, int column) {
+    return (long) row * columns + column;
+  }
+
+  private static void checkPoint(double latitude, double longitude) {
+    if (!(latitude >= -90 && latitude <= 90)) {
+      throw new IllegalArgumentException("Latitude must be in [-90, 90]: " + latitude);
+    }
+    if (!(longitude >= -180 && longitude <= 180)) {
+      throw new IllegalArgumentException("Longitude must be in [-180, 180]: " + longitude);
+    }
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Shares equal strings between the objects that hold them, for the values of
+ * {@link AutoParse.Interned} properties. Unlike {@link String#intern()}, the table only holds
+ * strings weakly, so a value that no object uses any more can be collected.
+ *
+ * <p>The table is split into stripes by hash code, each with its own lock, so that threads
+ * interning different values rarely wait for each other.
+ */
+public final class AutoParseInterner {
+  private static final int STRIPES = 16;
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static final Map<String, WeakReference<String>>[] TABLE = new Map[STRIPES];
+  static {
+    for (int i = 0; i < STRIPES; i++) {
+      TABLE[i] = new WeakHashMap<String, WeakReference<String>>();
+    }
+  }
+
+  private AutoParseInterner() {}
+
+  /**
+   * Returns the instance in the table that is equal to {@code value}, adding {@code value} if
+   * there is none, or null if {@code value} is null.
+   */
+  public static String intern(String value) {
+    if (value == null) {
+      return null;
+    }
+    Map<String, WeakReference<String>> stripe = stripeOf(value);
+    synchronized (stripe) {
+      WeakReference<String> ref = stripe.get(value);
+      String interned = ref != null ? ref.get() : null;
+      if (interned != null) {
+        return interned;
+      }
+      stripe.put(value, new WeakReference<String>(value));
+      return value;
+    }
+  }
+
+  // The number of strings in the table, including those that are about to be collected.
+  static int size() {
+    int size = 0;
+    for (Map<String, WeakReference<String>> stripe : TABLE) {
+      synchronized (stripe) {
+        size += stripe.size();
+      }
+    }
+    return size;
+  }
+
+  private static Map<String, WeakReference<String>> stripeOf(String value) {
+    int h = value.hashCode();
+    h ^= h >>> 16;
+    return TABLE[(h ^ h >>> 8) & (STRIPES - 1)];
+  }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse;
+
+import com.parse.ParseException;
+import com.parse.ParseObject;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A typed view of a list of pointers stored in a {@link ParseObject}, which the generated getter
+ * of a {@code List<Foo>} property returns when {@code Foo} is an {@code @AutoParse} class.
+ * Elements are wrapped into {@code AutoParse_Foo} when they are first read and the wrappers are
+ * kept, so iterating again doesn't allocate. Each change copies the stored list and puts the copy
+ * into the owner, so that it is saved; bulk changes such as {@code addAll} copy it once. The list
+ * that the owner held before is never modified, since Parse may share it with its copy of the
+ * server data.
+ *
+ * <p>Like the {@link ParseObject} it belongs to, a view is not thread-safe.
+ */
+public final class AutoParseList<E> extends AbstractList<E> implements RandomAccess {
+  private final ParseObject owner;
+  private final String key;
+  private List<Object> stored;
+  private final AutoParseWrapper<E> wrapper;
+  // The wrapper of each stored element, or null where none was made yet.
+  private final List<E> wrapped = new ArrayList<E>();
+
+  private AutoParseList(ParseObject owner, String key, List<Object> stored,
+      AutoParseWrapper<E> wrapper) {
+    this.owner = owner;
+    this.key = key;
+    this.stored = stored;
+    this.wrapper = wrapper;
+  }
+
+  /**
+   * Returns a view of {@code stored}, the value of {@code key} in {@code owner}, or null if it
+   * isn't a list.
+   */
+  @SuppressWarnings("unchecked")
+  public static <E> AutoParseList<E> view(ParseObject owner, String key, Object stored,
+      AutoParseWrapper<E> wrapper) {
+    return stored instanceof List
+        ? new AutoParseList<E>(owner, key, (List<Object>) stored, wrapper)
+        : null;
+  }
+
+  /**
+   * Returns what to store for {@code list}: the list behind it if it is a view, otherwise the
+   * list itself if it holds no wrappers, and otherwise a copy with every element unwrapped.
+   */
+  public static <E> List<?> toStored(List<? extends E> list, AutoParseWrapper<E> wrapper) {
+    if (list instanceof AutoParseList) {
+      return ((AutoParseList<?>) list).stored;
+    }
+    if (list == null) {
+      return null;
+    }
+    List<Object> copy = null;
+    for (int i = 0; i < list.size(); i++) {
+      E element = list.get(i);
+      Object unwrapped = element != null ? wrapper.unwrap(element) : null;
+      if (copy == null && unwrapped != element) {
+        copy = new ArrayList<Object>(list);
+      }
+      if (copy != null) {
+        copy.set(i, unwrapped);
+      }
+    }
+    return copy != null ? copy : list;
+  }
+
+  /**
+   * Fetches every element whose data is not yet available, with one request per class.
+   *
+   * @return the number of elements that were fetched
+   */
+  public int fetchAllIfNeeded() throws ParseException {
+    return AutoParsePrefetcher.fetchAll(stored);
+  }
+
+  int fetchAllIfNeeded(AutoParsePrefetcher.FetchOperation fetchOperation) throws ParseException {
+    return AutoParsePrefetcher.fetchAll(stored, fetchOperation);
+  }
+
+  @Override
+  public int size() {
+    return stored.size();
+  }
+
+  @Override
+  public E get(int index) {
+    Object element = stored.get(index);
+    if (!(element instanceof ParseObject)) {
+      return null;
+    }
+    syncWrapped();
+    E cached = wrapped.get(index);
+    if (cached != null && wrapper.unwrap(cached) == element) {
+      return cached;
+    }
+    E wrappedElement = wrapper.wrap((ParseObject) element);
+    wrapped.set(index, wrappedElement);
+    return wrappedElement;
+  }
+
+  @Override
+  public E set(int index, E element) {
+    E previous = get(index);
+    List<Object> copy = copy();
+    copy.set(index, unwrap(element));
+    wrapped.set(index, element);
+    writeBack(copy);
+    return previous;
+  }
+
+  @Override
+  public void add(int index, E element) {
+    List<Object> copy = copy();
+    copy.add(index, unwrap(element));
+    wrapped.add(index, element);
+    modCount++;
+    writeBack(copy);
+  }
+
+  @Override
+  public boolean addAll(Collection<? extends E> elements) {
+    return addAll(size(), elements);
+  }
+
+  @Override
+  public boolean addAll(int index, Collection<? extends E> elements) {
+    if (index < 0 || index > size()) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+    }
+    if (elements.isEmpty()) {
+      return false;
+    }
+    List<E> added = new ArrayList<E>(elements);
+    List<Object> unwrapped = new ArrayList<Object>(added.size());
+    for (E element : added) {
+      unwrapped.add(unwrap(element));
+    }
+    List<Object> copy = copy();
+    copy.addAll(index, unwrapped);
+    wrapped.addAll(index, added);
+    modCount++;
+    writeBack(copy);
+    return true;
+  }
+
+  @Override
+  public E remove(int index) {
+    E previous = get(index);
+    List<Object> copy = copy();
+    copy.remove(index);
+    wrapped.remove(index);
+    modCount++;
+    writeBack(copy);
+    return previous;
+  }
+
+  @Override
+  protected void removeRange(int fromIndex, int toIndex) {
+    if (fromIndex == toIndex) {
+      return;
+    }
+    List<Object> copy = copy();
+    copy.subList(fromIndex, toIndex).clear();
+    wrapped.subList(fromIndex, toIndex).clear();
+    modCount++;
+    writeBack(copy);
+  }
+
+  @Override
+  public void clear() {
+    wrapped.clear();
+    modCount++;
+    writeBack(new ArrayList<Object>());
+  }
+
+  private Object unwrap(E element) {
+    return element != null ? wrapper.unwrap(element) : null;
+  }
+
+  // A copy of the stored list to change, with the wrappers in step with it.
+  private List<Object> copy() {
+    syncWrapped();
+    return new ArrayList<Object>(stored);
+  }
+
+  // Starts over if the stored list was changed other than through this view.
+  private void syncWrapped() {
+    if (wrapped.size() != stored.size()) {
+      wrapped.clear();
+      wrapped.addAll(Collections.<E>nCopies(stored.size(), null));
+    }
+  }
+
+  private void writeBack(List<Object> copy) {
+    stored = copy;
+    owner.put(key, copy);
+  }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse;
+
+import com.parse.ParseException;
+import com.parse.ParseObject;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A typed view of a map of pointers stored in a {@link ParseObject}, which the generated getter
+ * of a {@code Map<String, Foo>} property returns when {@code Foo} is an {@code @AutoParse} class.
+ * Values are wrapped into {@code AutoParse_Foo} when they are first read and the wrappers are
+ * kept, so iterating again doesn't allocate. Each change copies the stored map and puts the copy
+ * into the owner, so that it is saved. The map that the owner held before is never modified,
+ * since Parse may share it with its copy of the server data.
+ *
+ * <p>Like the {@link ParseObject} it belongs to, a view is not thread-safe.
+ */
+public final class AutoParseMap<V> extends AbstractMap<String, V> {
+  private final ParseObject owner;
+  private final String key;
+  private Map<String, Object> stored;
+  private final AutoParseWrapper<V> wrapper;
+  private final Map<String, V> wrapped = new HashMap<String, V>();
+  private Set<Map.Entry<String, V>> entrySet;
+
+  private AutoParseMap(ParseObject owner, String key, Map<String, Object> stored,
+      AutoParseWrapper<V> wrapper) {
+    this.owner = owner;
+    this.key = key;
+    this.stored = stored;
+    this.wrapper = wrapper;
+  }
+
+  /**
+   * Returns a view of {@code stored}, the value of {@code key} in {@code owner}, or null if it
+   * isn't a map.
+   */
+  @SuppressWarnings("unchecked")
+  public static <V> AutoParseMap<V> view(ParseObject owner, String key, Object stored,
+      AutoParseWrapper<V> wrapper) {
+    return stored instanceof Map
+        ? new AutoParseMap<V>(owner, key, (Map<String, Object>) stored, wrapper)
+        : null;
+  }
+
+  /**
+   * Returns what to store for {@code map}: the map behind it if it is a view, otherwise the map
+   * itself if it holds no wrappers, and otherwise a copy with every value unwrapped.
+   */
+  public static <V> Map<String, ?> toStored(Map<String, ? extends V> map,
+      AutoParseWrapper<V> wrapper) {
+    if (map instanceof AutoParseMap) {
+      return ((AutoParseMap<?>) map).stored;
+    }
+    if (map == null) {
+      return null;
+    }
+    Map<String, Object> copy = null;
+    for (Map.Entry<String, ? extends V> entry : map.entrySet()) {
+      V value = entry.getValue();
+      Object unwrapped = value != null ? wrapper.unwrap(value) : null;
+      if (copy == null && unwrapped != value) {
+        copy = new LinkedHashMap<String, Object>(map);
+      }
+      if (copy != null) {
+        copy.put(entry.getKey(), unwrapped);
+      }
+    }
+    return copy != null ? copy : map;
+  }
+
+  /**
+   * Fetches every value whose data is not yet available, with one request per class.
+   *
+   * @return the number of values that were fetched
+   */
+  public int fetchAllIfNeeded() throws ParseException {
+    return AutoParsePrefetcher.fetchAll(stored.values());
+  }
+
+  int fetchAllIfNeeded(AutoParsePrefetcher.FetchOperation fetchOperation) throws ParseException {
+    return AutoParsePrefetcher.fetchAll(stored.values(), fetchOperation);
+  }
+
+  @Override
+  public int size() {
+    return stored.size();
+  }
+
+  @Override
+  public boolean containsKey(Object k) {
+    return stored.containsKey(k);
+  }
+
+  @Override
+  public V get(Object k) {
+    Object value = stored.get(k);
+    if (!(value instanceof ParseObject)) {
+      return null;
+    }
+    V cached = wrapped.get(k);
+    if (cached != null && wrapper.unwrap(cached) == value) {
+      return cached;
+    }
+    V wrappedValue = wrapper.wrap((ParseObject) value);
+    wrapped.put((String) k, wrappedValue);
+    return wrappedValue;
+  }
+
+  @Override
+  public V put(String k, V value) {
+    V previous = get(k);
+    Map<String, Object> copy = new LinkedHashMap<String, Object>(stored);
+    putInto(copy, k, value);
+    writeBack(copy);
+    return previous;
+  }
+
+  @Override
+  public void putAll(Map<? extends String, ? extends V> map) {
+    if (map.isEmpty()) {
+      return;
+    }
+    Map<String, Object> copy = new LinkedHashMap<String, Object>(stored);
+    for (Map.Entry<? extends String, ? extends V> entry : map.entrySet()) {
+      putInto(copy, entry.getKey(), entry.getValue());
+    }
+    writeBack(copy);
+  }
+
+  private void putInto(Map<String, Object> copy, String k, V value) {
+    copy.put(k, value != null ? wrapper.unwrap(value) : null);
+    if (value != null) {
+      wrapped.put(k, value);
+    } else {
+      wrapped.remove(k);
+    }
+  }
+
+  @Override
+  public V remove(Object k) {
+    if (!stored.containsKey(k)) {
+      return null;
+    }
+    V previous = get(k);
+    Map<String, Object> copy = new LinkedHashMap<String, Object>(stored);
+    copy.remove(k);
+    wrapped.remove(k);
+    writeBack(copy);
+    return previous;
+  }
+
+  @Override
+  public void clear() {
+    wrapped.clear();
+    writeBack(new LinkedHashMap<String, Object>());
+  }
+
+  @Override
+  public Set<Map.Entry<String, V>> entrySet() {
+    if (entrySet == null) {
+      entrySet = new EntrySet();
+    }
+    return entrySet;
+  }
+
+  private void writeBack(Map<String, Object> copy) {
+    stored = copy;
+    owner.put(key, copy);
+  }
+
+  private final class EntrySet extends AbstractSet<Map.Entry<String, V>> {
+    @Override
+    public int size() {
+      return stored.size();
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, V>> iterator() {
+      // Iterates over the map as it was, since removing an entry replaces the stored map.
+      final Iterator<String> keys = stored.keySet().iterator();
+      return new Iterator<Map.Entry<String, V>>() {
+        private String current;
+
+        @Override public boolean hasNext() {
+          return keys.hasNext();
+        }
+
+        @Override public Map.Entry<String, V> next() {
+          current = keys.next();
+          return new Entry(current);
+        }
+
+        @Override public void remove() {
+          if (current == null) {
+            throw new IllegalStateException();
+          }
+          AutoParseMap.this.remove(current);
+          current = null;
+        }
+      };
+    }
+  }
+
+  // An entry that reads and writes through the map, so its value is only wrapped when asked for.
+  private final class Entry implements Map.Entry<String, V> {
+    private final String k;
+
+    Entry(String k) {
+      this.k = k;
+    }
+
+    @Override public String getKey() {
+      return k;
+    }
+
+    @Override public V getValue() {
+      return get(k);
+    }
+
+    @Override public V setValue(V value) {
+      return put(k, value);
+    }
+
+    @Override public boolean equals(Object o) {
+      if (!(o instanceof Map.Entry)) {
+        return false;
+      }
+      Map.Entry<?, ?> that = (Map.Entry<?, ?>) o;
+      V value = getValue();
+      return k.equals(that.getKey())
+          && (value == null ? that.getValue() == null : value.equals(that.getValue()));
+    }
+
+    @Override public int hashCode() {
+      V value = getValue();
+      return k.hashCode() ^ (value == null ? 0 : value.hashCode());
+    }
+
+    @Override public String toString() {
+      return k + "=" + getValue();
+    }
+  }
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse;
+
+import com.parse.ParseException;
+import com.parse.ParseObject;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Receives counts and latencies from generated classes and from the runtime helpers: property
+ * reads and writes, Parcel reads and writes, batched saves and fetches, and cursor pages.
+ *
+ * <p>Generated classes only call the hooks if they were compiled with
+ * {@code -Aauto.parse.metrics=true}. Every hook is guarded by {@link #ENABLED}, a
+ * {@code static final} that is decided once when this class is initialized, so the JIT drops the
+ * hooks entirely when metrics are off.
+ *
+ * <p>The system property {@code auto.parse.metrics} enables metrics: {@code true} uses the
+ * built-in {@link Counting} implementation, and any other value except {@code false} is the name
+ * of a subclass with a public no-argument constructor. Without it, an implementation registered
+ * as a {@link ServiceLoader} service for this class is used, except on Android, where looking for
+ * one would scan the whole APK. Subclasses override only the hooks they care about; hooks may be
+ * called from any thread.
+ *
+ * <p>Each operation is reported once it has finished, with its duration. {@link #begin} is
+ * called as it starts, and whatever it returns is passed back to the hook as {@code begun}, so
+ * that an implementation can also see when it ran, as JFR events need to. The {@code bytes} of a
+ * save, fetch or query page is an estimate of the objects' data as JSON; that of a Parcel read or
+ * write is exact.
+ */
+public abstract class AutoParseMetrics {
+  private static final AutoParseMetrics NONE = new AutoParseMetrics() {};
+  private static final AutoParseMetrics INSTANCE =
+      load(System.getProperty("auto.parse.metrics"), System.getProperty("java.vm.name", ""));
+
+  /** Whether hooks are called at all. */
+  public static final boolean ENABLED = INSTANCE != null;
+
+  // ART reports itself as Dalvik too.
+  static AutoParseMetrics load(String property, String vmName) {
+    if ("false".equals(property)) {
+      return null;
+    } else if ("true".equals(property)) {
+      return new Counting();
+    } else if (property != null) {
+      try {
+        return Class.forName(property).asSubclass(AutoParseMetrics.class).newInstance();
+      } catch (Exception e) {
+        throw new IllegalArgumentException("Cannot create the metrics " + property, e);
+      }
+    } else if (vmName.startsWith("Dalvik")) {
+      return null;
+    }
+    Iterator<AutoParseMetrics> services =
+        ServiceLoader.load(AutoParseMetrics.class, AutoParseMetrics.class.getClassLoader())
+            .iterator();
+    return services.hasNext() ? services.next() : null;
+  }
+
+  /**
+   * Returns the active implementation. Only meaningful if {@link #ENABLED}; otherwise returns an
+   * implementation that ignores everything.
+   */
+  public static AutoParseMetrics get() {
+    return ENABLED ? INSTANCE : NONE;
+  }
+
+  /** The operations that {@link #begin} is told about. */
+  public enum Operation {
+    SAVE, FETCH, QUERY_PAGE, PARCEL, FLUSH
+  }
+
+  /**
+   * {@code operation} is starting; the hook that reports it receives the result as
+   * {@code begun}. Returns null by default.
+   */
+  public Object begin(Operation operation) {
+    return null;
+  }
+
+  /** A generated getter of {@code className} was called. */
+  public void onRead(String className, String property) {}
+
+  /** A generated setter of {@code className} was called with a non-null value. */
+  public void onWrite(String className, String property) {}
+
+  /**
+   * An object was read from ({@code write} false) or written to a Parcel. {@code bytes} is the
+   * number of Parcel bytes it took up.
+   */
+  public void onParcel(Object begun, String className, String objectId, boolean write,
+      int bytes, long durationNanos) {}
+
+  /**
+   * A batch of objects was saved. {@code className} is null if the batch mixed several classes,
+   * and {@code objectId} is null unless the batch held a single object.
+   */
+  public void onSave(Object begun, String className, String objectId, int objects, int bytes,
+      long durationNanos, boolean success) {}
+
+  /**
+   * A batch of objects was fetched. {@code className} is null if the batch mixed several classes,
+   * and {@code objectId} is null unless the batch held a single object. {@code bytes} is 0 if the
+   * fetch failed.
+   */
+  public void onFetch(Object begun, String className, String objectId, int objects, int bytes,
+      long durationNanos, boolean success) {}
+
+  /** An {@link AutoParseCursor} loaded a page of {@code rows} rows. */
+  public void onQueryPage(Object begun, String className, int rows, int bytes,
+      long durationNanos) {}
+
+  /**
+   * An {@link AutoParseSaveScheduler} flushed a batch of {@code objects} pending saves, including
+   * the save itself.
+   */
+  public void onFlush(Object begun, int objects, int bytes, long durationNanos,
+      boolean success) {}
+
+  // The runtime helpers save and fetch through these, so that every batch is reported.
+  static <T extends ParseObject> void saveAll(List<T> objects) throws ParseException {
+    if (!ENABLED) {
+      ParseObject.saveAll(objects);
+      return;
+    }
+    Object begun = INSTANCE.begin(Operation.SAVE);
+    long start = System.nanoTime();
+    boolean success = false;
+    try {
+      ParseObject.saveAll(objects);
+      success = true;
+    } finally {
+      INSTANCE.onSave(begun, classNameOf(objects), objectIdOf(objects), objects.size(),
+          estimateBytes(objects), System.nanoTime() - start, success);
+    }
+  }
+
+  static <T extends ParseObject> void fetchAll(List<T> objects, boolean ifNeeded)
+      throws ParseException {
+    Object begun = ENABLED ? INSTANCE.begin(Operation.FETCH) : null;
+    long start = ENABLED ? System.nanoTime() : 0;
+    boolean success = false;
+    try {
+      if (ifNeeded) {
+        ParseObject.fetchAllIfNeeded(objects);
+      } else {
+        ParseObject.fetchAll(objects);
+      }
+      success = true;
+    } finally {
+      if (ENABLED) {
+        INSTANCE.onFetch(begun, classNameOf(objects), objectIdOf(objects), objects.size(),
+            success ? estimateBytes(objects) : 0, System.nanoTime() - start, success);
+      }
+    }
+  }
+
+  private static String objectIdOf(List<? extends ParseObject> objects) {
+    return objects.size() == 1 ? objects.get(0).getObjectId() : null;
+  }
+
+  /**
+   * Returns roughly how many bytes the data of {@code objects} takes up as JSON, counting pointers
+   * as references and not following them.
+   */
+  static int estimateBytes(Collection<? extends ParseObject> objects) {
+    long bytes = 2;
+    for (ParseObject object : objects) {
+      bytes += 3;
+      for (String key : object.keySet()) {
+        bytes += key.length() + 4 + estimateBytes(object.get(key));
+      }
+    }
+    return (int) Math.min(bytes, Integer.MAX_VALUE);
+  }
+
+  private static long estimateBytes(Object value) {
+    if (value instanceof String) {
+      return ((String) value).length() + 2;
+    } else if (value instanceof byte[]) {
+      // {"__type":"Bytes","base64":"..."}
+      return (((byte[]) value).length + 2) / 3 * 4 + 30;
+    } else if (value instanceof Date) {
+      // {"__type":"Date","iso":"2015-01-01T00:00:00.000Z"}
+      return 51;
+    } else if (value instanceof ParseObject) {
+      // {"__type":"Pointer","className":"...","objectId":"0123456789"}
+      String className = ((ParseObject) value).getClassName();
+      return 61 + (className != null ? className.length() : 0);
+    } else if (value instanceof Collection<?>) {
+      long bytes = 2;
+      for (Object element : (Collection<?>) value) {
+        bytes += estimateBytes(element) + 1;
+      }
+      return bytes;
+    } else if (value instanceof Map<?, ?>) {
+      long bytes = 2;
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        bytes += String.valueOf(entry.getKey()).length() + 4 + estimateBytes(entry.getValue());
+      }
+      return bytes;
+    }
+    return String.valueOf(value).length();
+  }
+
+  /** Returns the class name shared by every object in {@code objects}, or null if they differ. */
+  static String classNameOf(List<? extends ParseObject> objects) {
+    String className = null;
+    for (ParseObject object : objects) {
+      if (className == null) {
+        className = object.getClassName();
+      } else if (!className.equals(object.getClassName())) {
+        return null;
+      }
+    }
+    return className;
+  }
+
+  /**
+   * Counts reads and writes per property and accumulates latencies per operation and class, with
+   * counters striped across threads so that hot getters don't contend on one cache line.
+   */
+  public static class Counting extends AutoParseMetrics {
+    // Counters by group, like "read:Person" or "save:Person", then by name within the group.
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, StripedCounter>> groups =
+        new ConcurrentHashMap<String, ConcurrentHashMap<String, StripedCounter>>();
+    private final ConcurrentHashMap<String, String> readGroups =
+        new ConcurrentHashMap<String, String>();
+    private final ConcurrentHashMap<String, String> writeGroups =
+        new ConcurrentHashMap<String, String>();
+
+    private StripedCounter counter(String group, String name) {
+      ConcurrentHashMap<String, StripedCounter> counters = groups.get(group);
+      if (counters == null) {
+        ConcurrentHashMap<String, StripedCounter> newCounters =
+            new ConcurrentHashMap<String, StripedCounter>();
+        counters = groups.putIfAbsent(group, newCounters);
+        if (counters == null) {
+          counters = newCounters;
+        }
+      }
+      StripedCounter counter = counters.get(name);
+      if (counter == null) {
+        StripedCounter newCounter = new StripedCounter();
+        counter = counters.putIfAbsent(name, newCounter);
+        if (counter == null) {
+          counter = newCounter;
+        }
+      }
+      return counter;
+    }
+
+    // Reads and writes are the hot path, so their group names are built once per class.
+    private static String group(ConcurrentHashMap<String, String> groups, String prefix,
+        String className) {
+      String group = groups.get(className);
+      if (group == null) {
+        group = prefix + className;
+        groups.putIfAbsent(className, group);
+      }
+      return group;
+    }
+
+    private void time(String operation, String className, long count, long bytes,
+        long durationNanos) {
+      String group = operation + ":" + (className == null ? "*" : className);
+      counter(group, "count").add(count);
+      counter(group, "bytes").add(bytes);
+      counter(group, "nanos").add(durationNanos);
+    }
+
+    @Override public void onRead(String className, String property) {
+      counter(group(readGroups, "read:", className), property).add(1);
+    }
+
+    @Override public void onWrite(String className, String property) {
+      counter(group(writeGroups, "write:", className), property).add(1);
+    }
+
+    @Override public void onParcel(Object begun, String className, String objectId,
+        boolean write, int bytes, long durationNanos) {
+      time(write ? "parcelWrite" : "parcelRead", className, 1, bytes, durationNanos);
+    }
+
+    @Override public void onSave(Object begun, String className, String objectId, int objects,
+        int bytes, long durationNanos, boolean success) {
+      time(success ? "save" : "saveFailed", className, objects, bytes, durationNanos);
+    }
+
+    @Override public void onFetch(Object begun, String className, String objectId, int objects,
+        int bytes, long durationNanos, boolean success) {
+      time(success ? "fetch" : "fetchFailed", className, objects, bytes, durationNanos);
+    }
+
+    @Override public void onQueryPage(Object begun, String className, int rows, int bytes,
+        long durationNanos) {
+      time("queryPage", className, rows, bytes, durationNanos);
+    }
+
+    @Override public void onFlush(Object begun, int objects, int bytes, long durationNanos,
+        boolean success) {
+      time(success ? "flush" : "flushFailed", null, objects, bytes, durationNanos);
+    }
+
+    /**
+     * Returns every counter, sorted by key. Property access is counted under keys like
+     * {@code read:Person.name}. Operations have a {@code count} of objects, their total
+     * {@code bytes} and the total {@code nanos} spent, as in {@code save:Person.count} and
+     * {@code save:Person.nanos}; a {@code *} stands for batches that mixed several classes.
+     */
+    public SortedMap<String, Long> snapshot() {
+      SortedMap<String, Long> snapshot = new TreeMap<String, Long>();
+      for (Map.Entry<String, ConcurrentHashMap<String, StripedCounter>> group
+          : groups.entrySet()) {
+        for (Map.Entry<String, StripedCounter> counter : group.getValue().entrySet()) {
+          snapshot.put(group.getKey() + "." + counter.getKey(), counter.getValue().sum());
+        }
+      }
+      return snapshot;
+    }
+
+    public void reset() {
+      groups.clear();
+    }
+  }
+
+  // A counter spread over several cache lines, indexed by thread, that is summed when read.
+  static final class StripedCounter {
+    private static final int STRIPES = 8;
+    // Longs per cache line, so that neighbouring stripes don't share one.
+    private static final int PADDING = 8;
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    void add(long delta) {
+      int stripe = (int) (Thread.currentThread().getId() % STRIPES);
+      cells.addAndGet(stripe * PADDING, delta);
+    }
+
+    long sum() {
+      long sum = 0;
+      for (int i = 0; i < STRIPES; i++) {
+        sum += cells.get(i * PADDING);
+      }
+      return sum;
+    }
+  }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse;
+
+import com.parse.ParseObject;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Debug aid that spots N+1 access patterns: many distinct objects of one class reading the same
+ * pointer property shortly after one another, while the pointed-to objects still have to be
+ * fetched one by one. The getters that the processor generates for pointer properties, and lists
+ * and maps of them, report each read here while the detector is enabled. Once {@code threshold}
+ * distinct objects have done so within {@code windowMillis}, the {@link Listener} is told where
+ * it happened. That usually means a missing {@code @AutoParse(prefetch)} path or a missing call to
+ * {@code prefetchPointers}.
+ *
+ * <p>The detector is off by default and costs a volatile read per pointer getter call while off.
+ * Enable it in tests or staging builds: <pre>
+ *
+ *   AutoParseNPlusOneDetector.enable(new AutoParseNPlusOneDetector.Listener() {
+ *     &#64;Override public void onNPlusOne(AutoParseNPlusOneDetector.Report report) {
+ *       throw new AssertionError(report);
+ *     }
+ *   });</pre>
+ */
+public final class AutoParseNPlusOneDetector {
+  private AutoParseNPlusOneDetector() {}
+
+  /** Receives reports on the thread that made the read that crossed the threshold. */
+  public interface Listener {
+    void onNPlusOne(Report report);
+  }
+
+  /** Describes one detected access pattern. */
+  public static final class Report {
+    private final String className;
+    private final String property;
+    private final int count;
+    private final long windowMillis;
+    private final StackTraceElement[] stackTrace;
+
+    Report(String className, String property, int count, long windowMillis,
+        StackTraceElement[] stackTrace) {
+      this.className = className;
+      this.property = property;
+      this.count = count;
+      this.windowMillis = windowMillis;
+      this.stackTrace = stackTrace;
+    }
+
+    /** The Parse class name of the objects whose property was read. */
+    public String getClassName() {
+      return className;
+    }
+
+    public String getProperty() {
+      return property;
+    }
+
+    /** The number of distinct objects that read the property within the window. */
+    public int getCount() {
+      return count;
+    }
+
+    public long getWindowMillis() {
+      return windowMillis;
+    }
+
+    /** The frame that called the getter, or null if it could not be determined. */
+    public StackTraceElement getCallSite() {
+      return stackTrace.length > 1 ? stackTrace[1] : null;
+    }
+
+    /** The stack of the read that crossed the threshold, starting at the generated getter. */
+    public StackTraceElement[] getStackTrace() {
+      return stackTrace.clone();
+    }
+
+    @Override
+    public String toString() {
+      return "N+1 access to " + className + "." + property + " from " + count
+          + " objects within " + windowMillis + "ms at " + getCallSite();
+    }
+  }
+
+  public static final int DEFAULT_THRESHOLD = 10;
+  public static final long DEFAULT_WINDOW_MILLIS = 1000;
+
+  private static volatile Settings settings;
+
+  private static final ConcurrentHashMap<String, Window> windows =
+      new ConcurrentHashMap<String, Window>();
+
+  private static final class Settings {
+    final int threshold;
+    final long windowMillis;
+    final Listener listener;
+
+    Settings(int threshold, long windowMillis, Listener listener) {
+      this.threshold = threshold;
+      this.windowMillis = windowMillis;
+      this.listener = listener;
+    }
+  }
+
+  // The distinct objects that read one property since the window started. Generated classes may
+  // override equals, so objects are told apart by identity.
+  private static final class Window {
+    long start;
+    final Set<ParseObject> readers =
+        Collections.newSetFromMap(new IdentityHashMap<ParseObject, Boolean>());
+    boolean reported;
+  }
+
+  public static void enable(Listener listener) {
+    enable(DEFAULT_THRESHOLD, DEFAULT_WINDOW_MILLIS, listener);
+  }
+
+  public static void enable(int threshold, long windowMillis, Listener listener) {
+    if (threshold < 2) {
+      throw new IllegalArgumentException("threshold must be at least 2: " + threshold);
+    }
+    if (listener == null) {
+      throw new NullPointerException("listener");
+    }
+    windows.clear();
+    settings = new Settings(threshold, windowMillis, listener);
+  }
+
+  public static void disable() {
+    settings = null;
+    windows.clear();
+  }
+
+  public static boolean isEnabled() {
+    return settings != null;
+  }
+
+  /**
+   * Called by generated getters after reading a pointer property of {@code owner}. Reads whose
+   * value holds no pointer that still needs fetching are ignored.
+   */
+  public static void onRead(ParseObject owner, String property, Object value) {
+    Settings settings = AutoParseNPlusOneDetector.settings;
+    if (settings == null || owner == null || !needsFetch(value)) {
+      return;
+    }
+    String key = owner.getClassName() + "." + property;
+    Window window = windows.get(key);
+    if (window == null) {
+      Window newWindow = new Window();
+      window = windows.putIfAbsent(key, newWindow);
+      if (window == null) {
+        window = newWindow;
+      }
+    }
+    long now = System.currentTimeMillis();
+    int count;
+    synchronized (window) {
+      if (window.readers.isEmpty() || now - window.start > settings.windowMillis) {
+        window.start = now;
+        window.readers.clear();
+        window.reported = false;
+      }
+      window.readers.add(owner);
+      count = window.readers.size();
+      if (window.reported || count < settings.threshold) {
+        return;
+      }
+      window.reported = true;
+    }
+    settings.listener.onNPlusOne(new Report(owner.getClassName(), property, count,
+        settings.windowMillis, callerStack(new Throwable().getStackTrace())));
+  }
+
+  private static boolean needsFetch(Object value) {
+    if (value instanceof ParseObject) {
+      return !((ParseObject) value).isDataAvailable();
+    } else if (value instanceof Collection) {
+      for (Object element : (Collection<?>) value) {
+        if (needsFetch(element)) {
+          return true;
+        }
+      }
+    } else if (value instanceof Map) {
+      return needsFetch(((Map<?, ?>) value).values());
+    }
+    return false;
+  }
+
+  // Drops our own frames, so that the stack starts at the generated getter.
+  private static StackTraceElement[] callerStack(StackTraceElement[] stackTrace) {
+    int i = 0;
+    while (i < stackTrace.length
+        && stackTrace[i].getClassName().equals(AutoParseNPlusOneDetector.class.getName())) {
+      i++;
+    }
+    return Arrays.copyOfRange(stackTrace, i, stackTrace.length);
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse;
+
+import com.parse.ParseException;
+import com.parse.ParseObject;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves the pointers held by a list of objects with one batched fetch per class, instead of
+ * one fetch per pointer as each getter is first read. The generated {@code prefetchPointers}
+ * method of every {@code @AutoParse} class calls this with the keys of its pointer-valued
+ * properties, including lists and maps of pointers.
+ */
+public final class AutoParsePrefetcher {
+  private AutoParsePrefetcher() {}
+
+  // Fetches the pointers of one class; tests replace it to avoid the network.
+  interface FetchOperation {
+    void fetchAllIfNeeded(List<ParseObject> objects) throws ParseException;
+  }
+
+  private static final FetchOperation FETCH_ALL_IF_NEEDED = new FetchOperation() {
+    @Override public void fetchAllIfNeeded(List<ParseObject> objects) throws ParseException {
+      AutoParseMetrics.fetchAll(objects, true);
+    }
+  };
+
+  /**
+   * Fetches every pointer found under {@code keys} in {@code objects} whose data is not yet
+   * available. Pointers are grouped by class name and each group is fetched with a single
+   * {@link ParseObject#fetchAllIfNeeded} call.
+   *
+   * @return the number of pointers that were fetched
+   */
+  public static int fetchPointers(List<? extends ParseObject> objects, String... keys)
+      throws ParseException {
+    return fetchPointers(objects, keys, FETCH_ALL_IF_NEEDED);
+  }
+
+  static int fetchPointers(List<? extends ParseObject> objects, String[] keys,
+      FetchOperation fetchOperation) throws ParseException {
+    return fetch(unfetchedPointers(objects, keys), fetchOperation);
+  }
+
+  /**
+   * Fetches the pointers among {@code values} whose data is not yet available, with one
+   * {@link ParseObject#fetchAllIfNeeded} call per class, like {@link #fetchPointers}.
+   */
+  static int fetchAll(Collection<?> values, FetchOperation fetchOperation)
+      throws ParseException {
+    Map<String, List<ParseObject>> byClass = new LinkedHashMap<String, List<ParseObject>>();
+    collect(values, byClass, new IdentityHashMap<ParseObject, Boolean>());
+    return fetch(byClass, fetchOperation);
+  }
+
+  static int fetchAll(Collection<?> values) throws ParseException {
+    return fetchAll(values, FETCH_ALL_IF_NEEDED);
+  }
+
+  private static int fetch(Map<String, List<ParseObject>> byClass,
+      FetchOperation fetchOperation) throws ParseException {
+    int fetched = 0;
+    for (List<ParseObject> pointers : byClass.values()) {
+      fetchOperation.fetchAllIfNeeded(pointers);
+      fetched += pointers.size();
+    }
+    return fetched;
+  }
+
+  /**
+   * Returns the pointers under {@code keys} in {@code objects} that still need fetching, grouped
+   * by class name in the order they were first seen. Each instance appears at most once.
+   */
+  static Map<String, List<ParseObject>> unfetchedPointers(
+      List<? extends ParseObject> objects, String[] keys) {
+    Map<String, List<ParseObject>> byClass = new LinkedHashMap<String, List<ParseObject>>();
+    Map<ParseObject, Boolean> seen = new IdentityHashMap<ParseObject, Boolean>();
+    for (ParseObject object : objects) {
+      if (object == null) {
+        continue;
+      }
+      for (String key : keys) {
+        collect(object.get(key), byClass, seen);
+      }
+    }
+    return byClass;
+  }
+
+  private static void collect(Object value, Map<String, List<ParseObject>> byClass,
+      Map<ParseObject, Boolean> seen) {
+    if (value instanceof ParseObject) {
+      ParseObject pointer = (ParseObject) value;
+      if (pointer.isDataAvailable() || seen.put(pointer, Boolean.TRUE) != null) {
+        return;
+      }
+      List<ParseObject> pointers = byClass.get(pointer.getClassName());
+      if (pointers == null) {
+        pointers = new ArrayList<ParseObject>();
+        byClass.put(pointer.getClassName(), pointers);
+      }
+      pointers.add(pointer);
+    } else if (value instanceof Collection) {
+      for (Object element : (Collection<?>) value) {
+        collect(element, byClass, seen);
+      }
+    } else if (value instanceof Map) {
+      for (Object element : ((Map<?, ?>) value).values()) {
+        collect(element, byClass, seen);
+      }
+    }
+  }
+}
@@ -0,0 +1,382 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse;
+
+import com.parse.ParseException;
+import com.parse.ParseObject;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces individual saves into batched {@link ParseObject#saveAll} calls. Objects enqueued
+ * with {@link #enqueue} are collected until either {@code windowMillis} has passed since the first
+ * pending object arrived or {@code maxBatchSize} distinct objects are pending, and are then saved
+ * together. Pending objects are keyed by class and objectId (or by identity before their first
+ * save), so enqueuing an object again after every small edit costs nothing until the flush. A
+ * different instance of the same record is still saved separately, since it may carry its own
+ * changes.
+ *
+ * <p>Enqueue any {@code @AutoParse} object, usually on {@link #getDefault()}; for one returned by
+ * a generated {@code WRAPPER}, enqueue {@code WRAPPER.unwrap(object)}, which holds its data. If a
+ * batch fails, every object in it falls back to {@link ParseObject#saveEventually()} so that the
+ * edit is not lost, whether the batch failed with a ParseException or a runtime exception.
+ */
+public final class AutoParseSaveScheduler {
+  /** Receives the outcome of each flush, on the scheduler thread. */
+  public interface Listener {
+    void onFlushed(List<ParseObject> objects);
+
+    void onFlushFailed(List<ParseObject> objects, ParseException e);
+  }
+
+  /** A point-in-time snapshot of the counters of a scheduler. */
+  public static final class Metrics {
+    private final long enqueued;
+    private final long coalesced;
+    private final long flushes;
+    private final long saved;
+    private final long failed;
+    private final int pending;
+
+    Metrics(long enqueued, long coalesced, long flushes, long saved, long failed, int pending) {
+      this.enqueued = enqueued;
+      this.coalesced = coalesced;
+      this.flushes = flushes;
+      this.saved = saved;
+      this.failed = failed;
+      this.pending = pending;
+    }
+
+    /** Calls to {@link #enqueue}. */
+    public long getEnqueued() {
+      return enqueued;
+    }
+
+    /** Calls to {@link #enqueue} that were merged into an already pending save. */
+    public long getCoalesced() {
+      return coalesced;
+    }
+
+    /** Batched save requests issued. */
+    public long getFlushes() {
+      return flushes;
+    }
+
+    /** Objects saved successfully. */
+    public long getSaved() {
+      return saved;
+    }
+
+    /** Objects whose batch failed and that were handed to saveEventually. */
+    public long getFailed() {
+      return failed;
+    }
+
+    /** Objects waiting for the next flush. */
+    public int getPending() {
+      return pending;
+    }
+
+    @Override
+    public String toString() {
+      return "Metrics{enqueued=" + enqueued + ", coalesced=" + coalesced + ", flushes=" + flushes
+          + ", saved=" + saved + ", failed=" + failed + ", pending=" + pending + "}";
+    }
+  }
+
+  // Batches are saved by this operation; tests replace it to avoid the network.
+  interface SaveOperation {
+    void saveAll(List<ParseObject> objects) throws ParseException;
+
+    void saveEventually(ParseObject object);
+  }
+
+  private static final SaveOperation SAVE_ALL = new SaveOperation() {
+    @Override public void saveAll(List<ParseObject> objects) throws ParseException {
+      AutoParseMetrics.saveAll(objects);
+    }
+
+    @Override public void saveEventually(ParseObject object) {
+      object.saveEventually();
+    }
+  };
+
+  public static final long DEFAULT_WINDOW_MILLIS = 500;
+  public static final int DEFAULT_MAX_BATCH_SIZE = 50;
+
+  private static AutoParseSaveScheduler defaultScheduler;
+
+  private final long windowMillis;
+  private final int maxBatchSize;
+  private final ScheduledExecutorService executor;
+  private final boolean ownsExecutor;
+  private final SaveOperation saveOperation;
+  private final Map<Object, ParseObject> pending = new LinkedHashMap<Object, ParseObject>();
+  private ScheduledFuture<?> scheduledFlush;
+  private boolean shutdown;
+  private volatile Listener listener;
+
+  private final AtomicLong enqueued = new AtomicLong();
+  private final AtomicLong coalesced = new AtomicLong();
+  private final AtomicLong flushes = new AtomicLong();
+  private final AtomicLong saved = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+
+  public AutoParseSaveScheduler(long windowMillis, int maxBatchSize) {
+    this(windowMillis, maxBatchSize, newSchedulerThread(), true, SAVE_ALL);
+  }
+
+  /**
+   * Creates a scheduler that flushes on the given executor. The executor is not shut down by
+   * {@link #shutdown}; a single-threaded executor keeps flushes in order.
+   */
+  public AutoParseSaveScheduler(long windowMillis, int maxBatchSize,
+      ScheduledExecutorService executor) {
+    this(windowMillis, maxBatchSize, executor, false, SAVE_ALL);
+  }
+
+  AutoParseSaveScheduler(long windowMillis, int maxBatchSize, ScheduledExecutorService executor,
+      boolean ownsExecutor, SaveOperation saveOperation) {
+    if (windowMillis < 0) {
+      throw new IllegalArgumentException("windowMillis must not be negative: " + windowMillis);
+    }
+    if (maxBatchSize <= 0) {
+      throw new IllegalArgumentException("maxBatchSize must be positive: " + maxBatchSize);
+    }
+    this.windowMillis = windowMillis;
+    this.maxBatchSize = maxBatchSize;
+    this.executor = executor;
+    this.ownsExecutor = ownsExecutor;
+    this.saveOperation = saveOperation;
+  }
+
+  static ScheduledExecutorService newSchedulerThread() {
+    return new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+      @Override public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "auto-parse-save-scheduler");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * Returns the scheduler shared by the whole app, creating one with
+   * {@link #DEFAULT_WINDOW_MILLIS} and {@link #DEFAULT_MAX_BATCH_SIZE} if none was set.
+   */
+  public static synchronized AutoParseSaveScheduler getDefault() {
+    if (defaultScheduler == null) {
+      defaultScheduler = new AutoParseSaveScheduler(DEFAULT_WINDOW_MILLIS, DEFAULT_MAX_BATCH_SIZE);
+    }
+    return defaultScheduler;
+  }
+
+  public static synchronized void setDefault(AutoParseSaveScheduler scheduler) {
+    defaultScheduler = scheduler;
+  }
+
+  public void setListener(Listener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Schedules {@code object} to be saved with the next batch.
+   *
+   * @throws IllegalStateException if the scheduler has been shut down
+   */
+  public void enqueue(ParseObject object) {
+    enqueued.incrementAndGet();
+    boolean flushNow;
+    synchronized (this) {
+      if (shutdown) {
+        throw new IllegalStateException("AutoParseSaveScheduler has been shut down");
+      }
+      Object key = keyOf(object);
+      ParseObject previous = pending.get(key);
+      if (previous == object) {
+        coalesced.incrementAndGet();
+        return;
+      } else if (previous != null) {
+        // Another instance with the same objectId; its changes must be saved too.
+        key = new IdentityKey(object);
+        if (pending.containsKey(key)) {
+          coalesced.incrementAndGet();
+          return;
+        }
+      }
+      pending.put(key, object);
+      flushNow = pending.size() >= maxBatchSize;
+      if (!flushNow && scheduledFlush == null) {
+        scheduledFlush = executor.schedule(flushTask, windowMillis, TimeUnit.MILLISECONDS);
+      }
+    }
+    if (flushNow) {
+      flush();
+    }
+  }
+
+  /**
+   * Saves every pending object as soon as possible, without waiting for the window to end. Does
+   * nothing after {@link #shutdown}, which has already scheduled the final flush.
+   */
+  public void flush() {
+    try {
+      executor.execute(flushTask);
+    } catch (RejectedExecutionException e) {
+      synchronized (this) {
+        if (!shutdown) {
+          throw e;
+        }
+      }
+    }
+  }
+
+  /**
+   * Stops accepting objects and flushes the pending ones. If the scheduler created its own
+   * thread, that thread ends once the flush is done.
+   */
+  public void shutdown() {
+    synchronized (this) {
+      if (shutdown) {
+        return;
+      }
+      shutdown = true;
+      // The final flush below replaces the timed one, which would otherwise hold up termination.
+      if (scheduledFlush != null) {
+        scheduledFlush.cancel(false);
+        scheduledFlush = null;
+      }
+    }
+    flush();
+    if (ownsExecutor) {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Waits for a {@link #shutdown} to finish its final flush. Only meaningful for schedulers that
+   * own their thread.
+   */
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    return executor.awaitTermination(timeout, unit);
+  }
+
+  public Metrics getMetrics() {
+    int pendingCount;
+    synchronized (this) {
+      pendingCount = pending.size();
+    }
+    return new Metrics(enqueued.get(), coalesced.get(), flushes.get(), saved.get(), failed.get(),
+        pendingCount);
+  }
+
+  private final Runnable flushTask = new Runnable() {
+    @Override public void run() {
+      while (flushBatch()) {
+        // Keep going while full batches are waiting.
+      }
+    }
+  };
+
+  // Saves up to maxBatchSize pending objects; returns true if more are waiting.
+  private boolean flushBatch() {
+    List<ParseObject> batch;
+    boolean more;
+    synchronized (this) {
+      if (scheduledFlush != null) {
+        scheduledFlush.cancel(false);
+        scheduledFlush = null;
+      }
+      if (pending.isEmpty()) {
+        return false;
+      }
+      batch = new ArrayList<ParseObject>(Math.min(pending.size(), maxBatchSize));
+      for (Iterator<ParseObject> it = pending.values().iterator();
+          it.hasNext() && batch.size() < maxBatchSize;) {
+        batch.add(it.next());
+        it.remove();
+      }
+      more = !pending.isEmpty();
+    }
+    flushes.incrementAndGet();
+    Listener listener = this.listener;
+    Object begun = AutoParseMetrics.ENABLED
+        ? AutoParseMetrics.get().begin(AutoParseMetrics.Operation.FLUSH)
+        : null;
+    long start = AutoParseMetrics.ENABLED ? System.nanoTime() : 0;
+    ParseException failure = null;
+    try {
+      saveOperation.saveAll(batch);
+    } catch (ParseException e) {
+      failure = e;
+    } catch (RuntimeException e) {
+      // The batch is still pending on the server side, so take the same fallback path.
+      failure = new ParseException(e);
+    }
+    if (AutoParseMetrics.ENABLED) {
+      AutoParseMetrics.get().onFlush(begun, batch.size(), AutoParseMetrics.estimateBytes(batch),
+          System.nanoTime() - start, failure == null);
+    }
+    if (failure == null) {
+      saved.addAndGet(batch.size());
+      if (listener != null) {
+        listener.onFlushed(batch);
+      }
+    } else {
+      failed.addAndGet(batch.size());
+      for (ParseObject object : batch) {
+        saveOperation.saveEventually(object);
+      }
+      if (listener != null) {
+        listener.onFlushFailed(batch, failure);
+      }
+    }
+    return more;
+  }
+
+  private static Object keyOf(ParseObject object) {
+    String objectId = object.getObjectId();
+    if (objectId == null) {
+      return new IdentityKey(object);
+    }
+    return object.getClassName() + ":" + objectId;
+  }
+
+  // Objects that have not been saved yet have no objectId, so we can only merge them by identity.
+  private static final class IdentityKey {
+    private final Object object;
+
+    IdentityKey(Object object) {
+      this.object = object;
+    }
+
+    @Override public boolean equals(Object o) {
+      return o instanceof IdentityKey && ((IdentityKey) o).object == object;
+    }
+
+    @Override public int hashCode() {
+      return System.identityHashCode(object);
+    }
+  }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse;
+
+import com.parse.ParseObject;
+
+/**
+ * Turns a raw {@link ParseObject} into an instance of an {@code @AutoParse} class. Every generated
+ * class has a {@code WRAPPER} constant that returns the object itself when it already is an
+ * instance, and otherwise wraps it in a new {@code AutoParse_Foo}. The getters and setters of a
+ * wrapper read and write the object it wraps, which is the one to save.
+ */
+public interface AutoParseWrapper<T> {
+  T wrap(ParseObject parseObject);
+
+  /**
+   * Returns the object that holds the data of {@code object}, which is the one to store in
+   * another object's fields: the raw object if {@code object} came from {@link #wrap}, and
+   * otherwise {@code object} itself.
+   */
+  ParseObject unwrap(T object);
+}
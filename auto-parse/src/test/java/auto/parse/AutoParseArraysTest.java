@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse;
+
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+
+public class AutoParseArraysTest extends TestCase {
+  public void testToArray() {
+    List<?> list = Arrays.asList(1, 2L, 3.5, null, "4");
+    assertTrue(Arrays.equals(new int[] {1, 2, 3, 0, 0},
+        AutoParseArrays.toArray(list, (int[]) null)));
+    assertTrue(Arrays.equals(new long[] {1, 2, 3, 0, 0},
+        AutoParseArrays.toArray(list, (long[]) null)));
+    assertTrue(Arrays.equals(new double[] {1, 2, 3.5, 0, 0},
+        AutoParseArrays.toArray(list, (double[]) null)));
+  }
+
+  public void testNull() {
+    assertNull(AutoParseArrays.toArray(null, (int[]) null));
+    assertNull(AutoParseArrays.toArray(null, (long[]) null));
+    assertNull(AutoParseArrays.toArray(null, (double[]) null));
+    assertNull(AutoParseArrays.asList((int[]) null));
+    assertNull(AutoParseArrays.asList((long[]) null));
+    assertNull(AutoParseArrays.asList((double[]) null));
+  }
+
+  public void testRoundTrip() {
+    int[] ints = {Integer.MIN_VALUE, -1, 0, Integer.MAX_VALUE};
+    assertEquals(Arrays.asList(Integer.MIN_VALUE, -1, 0, Integer.MAX_VALUE),
+        AutoParseArrays.asList(ints));
+    assertTrue(Arrays.equals(ints, AutoParseArrays.toArray(AutoParseArrays.asList(ints), ints)));
+    long[] longs = {Long.MIN_VALUE, 0, 1L << 40};
+    assertTrue(Arrays.equals(longs,
+        AutoParseArrays.toArray(AutoParseArrays.asList(longs), longs)));
+    double[] doubles = {-0.5, 0, Double.MAX_VALUE};
+    assertTrue(Arrays.equals(doubles,
+        AutoParseArrays.toArray(AutoParseArrays.asList(doubles), doubles)));
+  }
+}
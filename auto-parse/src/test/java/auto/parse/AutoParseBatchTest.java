@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse;
+
+import com.parse.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+
+public class AutoParseBatchTest extends TestCase {
+  private ExecutorService executor;
+
+  @Override
+  protected void setUp() {
+    executor = Executors.newFixedThreadPool(8);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    executor.shutdownNow();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+  }
+
+  private static List<Integer> range(int n) {
+    List<Integer> list = new ArrayList<Integer>();
+    for (int i = 0; i < n; i++) {
+      list.add(i);
+    }
+    return list;
+  }
+
+  public void testSplitsIntoChunks() throws Exception {
+    final List<List<Integer>> chunks =
+        Collections.synchronizedList(new ArrayList<List<Integer>>());
+    boolean ok = AutoParseBatch.runChunked(range(10), 3, 2, executor,
+        new AutoParseBatch.ChunkOperation<Integer>() {
+          @Override public void run(List<Integer> chunk) {
+            chunks.add(chunk);
+          }
+        }, null);
+    assertTrue(ok);
+    assertEquals(4, chunks.size());
+    List<Integer> all = new ArrayList<Integer>();
+    for (List<Integer> chunk : chunks) {
+      assertTrue(chunk.size() <= 3);
+      all.addAll(chunk);
+    }
+    Collections.sort(all);
+    assertEquals(range(10), all);
+  }
+
+  public void testBoundsChunksInFlight() throws Exception {
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    AutoParseBatch.runChunked(range(100), 5, 3, executor,
+        new AutoParseBatch.ChunkOperation<Integer>() {
+          @Override public void run(List<Integer> chunk) {
+            int now = running.incrementAndGet();
+            synchronized (maxRunning) {
+              maxRunning.set(Math.max(maxRunning.get(), now));
+            }
+            try {
+              Thread.sleep(2);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+          }
+        }, null);
+    assertTrue("maxRunning=" + maxRunning, maxRunning.get() <= 3);
+  }
+
+  public void testReportsFailuresAndContinues() throws Exception {
+    final List<Integer> failedChunks = Collections.synchronizedList(new ArrayList<Integer>());
+    final AtomicInteger lastCompleted = new AtomicInteger();
+    boolean ok = AutoParseBatch.runChunked(range(10), 2, 1, executor,
+        new AutoParseBatch.ChunkOperation<Integer>() {
+          @Override public void run(List<Integer> chunk) throws ParseException {
+            if (chunk.contains(4)) {
+              throw new ParseException(ParseException.OBJECT_NOT_FOUND, "boom");
+            }
+          }
+        },
+        new AutoParseBatch.Listener<Integer>() {
+          @Override public void onChunkCompleted(
+              int chunk, List<? extends Integer> objects, int completedChunks, int totalChunks) {
+            assertEquals(5, totalChunks);
+            lastCompleted.set(completedChunks);
+          }
+
+          @Override public void onChunkFailed(
+              int chunk, List<? extends Integer> objects, ParseException e) {
+            failedChunks.add(chunk);
+          }
+        });
+    assertFalse(ok);
+    assertEquals(Collections.singletonList(2), failedChunks);
+    assertEquals(5, lastCompleted.get());
+  }
+
+  public void testReportsRuntimeExceptionsAsFailures() throws Exception {
+    final List<Throwable> causes = Collections.synchronizedList(new ArrayList<Throwable>());
+    final AtomicInteger completions = new AtomicInteger();
+    final IllegalStateException boom = new IllegalStateException("boom");
+    boolean ok = AutoParseBatch.runChunked(range(6), 2, 2, executor,
+        new AutoParseBatch.ChunkOperation<Integer>() {
+          @Override public void run(List<Integer> chunk) {
+            if (chunk.contains(0)) {
+              throw boom;
+            }
+          }
+        },
+        new AutoParseBatch.Listener<Integer>() {
+          @Override public void onChunkCompleted(
+              int chunk, List<? extends Integer> objects, int completedChunks, int totalChunks) {
+            completions.incrementAndGet();
+          }
+
+          @Override public void onChunkFailed(
+              int chunk, List<? extends Integer> objects, ParseException e) {
+            causes.add(e.getCause());
+          }
+        });
+    assertFalse(ok);
+    assertEquals(Collections.<Throwable>singletonList(boom), causes);
+    assertEquals(2, completions.get());
+  }
+
+  public void testRejectsBadArguments() throws Exception {
+    try {
+      AutoParseBatch.runChunked(range(1), 0, 1, executor, null, null);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      AutoParseBatch.runChunked(range(1), 1, 0, executor, null, null);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+}
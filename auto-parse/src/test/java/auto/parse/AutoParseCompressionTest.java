@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse;
+
+import java.util.Arrays;
+import java.util.Random;
+import junit.framework.TestCase;
+
+public class AutoParseCompressionTest extends TestCase {
+  private static final String TEXT;
+  static {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      sb.append("The quick brown fox jumps over the lazy dog. ");
+    }
+    TEXT = sb.toString();
+  }
+
+  private static final int MARKER = 4;
+
+  public void testBytesRoundTrip() {
+    byte[] value = TEXT.getBytes();
+    byte[] stored = AutoParseCompression.deflate(value, 1024);
+    assertEquals(AutoParseCompression.DEFLATED, stored[MARKER]);
+    assertTrue(stored.length < value.length / 10);
+    assertTrue(Arrays.equals(value, AutoParseCompression.inflate(stored, (byte[]) null)));
+  }
+
+  public void testBytesBelowThreshold() {
+    byte[] value = {1, 2, 3};
+    byte[] stored = AutoParseCompression.deflate(value, 1024);
+    assertTrue(Arrays.equals(
+        new byte[] {(byte) 0xAC, 'P', 'Z', 1, AutoParseCompression.RAW, 1, 2, 3}, stored));
+    assertTrue(Arrays.equals(value, AutoParseCompression.inflate(stored, (byte[]) null)));
+  }
+
+  public void testIncompressibleBytesAreStoredRaw() {
+    byte[] value = new byte[4096];
+    new Random(42).nextBytes(value);
+    byte[] stored = AutoParseCompression.deflate(value, 0);
+    assertEquals(AutoParseCompression.RAW, stored[MARKER]);
+    assertEquals(value.length + MARKER + 1, stored.length);
+    assertTrue(Arrays.equals(value, AutoParseCompression.inflate(stored, (byte[]) null)));
+  }
+
+  public void testStringRoundTrip() {
+    String stored = AutoParseCompression.deflate(TEXT, 1024);
+    assertTrue(stored.startsWith(AutoParseCompression.STRING_PREFIX));
+    assertTrue(stored.length() < TEXT.length() / 10);
+    assertEquals(TEXT, AutoParseCompression.inflate(stored, (String) null));
+    String unicode = TEXT.replace('o', '\u00f6');
+    assertEquals(unicode,
+        AutoParseCompression.inflate(AutoParseCompression.deflate(unicode, 1024), (String) null));
+  }
+
+  public void testShortStringIsStoredAsIs() {
+    String value = "short";
+    assertSame(value, AutoParseCompression.deflate(value, 1024));
+    assertSame(value, AutoParseCompression.inflate(value, (String) null));
+  }
+
+  public void testIncompressibleStringIsStoredAsIs() {
+    StringBuilder sb = new StringBuilder();
+    Random random = new Random(42);
+    for (int i = 0; i < 2048; i++) {
+      sb.append((char) (' ' + random.nextInt(95)));
+    }
+    String value = sb.toString();
+    assertSame(value, AutoParseCompression.deflate(value, 1024));
+  }
+
+  public void testStringWithPrefixIsEncoded() {
+    String value = AutoParseCompression.STRING_PREFIX + "Zm9v";
+    String stored = AutoParseCompression.deflate(value, 1024);
+    assertFalse(value.equals(stored));
+    assertEquals(value, AutoParseCompression.inflate(stored, (String) null));
+  }
+
+  public void testValuesStoredBeforeCompression() {
+    byte[] legacy = {42, 43};
+    assertSame(legacy, AutoParseCompression.inflate(legacy, (byte[]) null));
+    assertTrue(Arrays.equals(new byte[0],
+        AutoParseCompression.inflate(new byte[0], (byte[]) null)));
+    // Binary data such as float embeddings often starts with 0 or 1.
+    byte[] zero = {0, 0, -128, 63, 0, 0, 0, 64};
+    assertSame(zero, AutoParseCompression.inflate(zero, (byte[]) null));
+    byte[] one = {1, 0, 0, 0, 5, 1, 2, 3};
+    assertSame(one, AutoParseCompression.inflate(one, (byte[]) null));
+    String text = "plain text";
+    assertSame(text, AutoParseCompression.inflate(text, (String) null));
+    String notBase64 = AutoParseCompression.STRING_PREFIX + "not base64!";
+    assertSame(notBase64, AutoParseCompression.inflate(notBase64, (String) null));
+  }
+
+  public void testBase64() {
+    String[] encoded = {"", "Zg==", "Zm8=", "Zm9v", "Zm9vYg==", "Zm9vYmE=", "Zm9vYmFy"};
+    for (int i = 0; i < encoded.length; i++) {
+      byte[] bytes = "foobar".substring(0, i).getBytes();
+      assertEquals(encoded[i], AutoParseCompression.encodeBase64(bytes));
+      assertTrue(Arrays.equals(bytes, AutoParseCompression.decodeBase64("x" + encoded[i], 1)));
+    }
+    byte[] random = new byte[1000];
+    new Random(42).nextBytes(random);
+    assertTrue(Arrays.equals(random, AutoParseCompression.decodeBase64(
+        AutoParseCompression.encodeBase64(random), 0)));
+    assertNull(AutoParseCompression.decodeBase64("Zm9", 0));
+    assertNull(AutoParseCompression.decodeBase64("Zm=v", 0));
+    assertNull(AutoParseCompression.decodeBase64("Zm9*", 0));
+  }
+
+  public void testNull() {
+    assertNull(AutoParseCompression.deflate((byte[]) null, 0));
+    assertNull(AutoParseCompression.deflate((String) null, 0));
+    assertNull(AutoParseCompression.inflate(null, (byte[]) null));
+    assertNull(AutoParseCompression.inflate(null, (String) null));
+  }
+
+  public void testCorrupt() {
+    byte[] stored = AutoParseCompression.deflate(TEXT.getBytes(), 0);
+    try {
+      AutoParseCompression.inflate(Arrays.copyOf(stored, stored.length / 2), (byte[]) null);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      AutoParseCompression.inflate(
+          new byte[] {(byte) 0xAC, 'P', 'Z', 1, AutoParseCompression.DEFLATED, 0}, (byte[]) null);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  public void testLengthBeyondDeflateRatio() {
+    byte[] stored = AutoParseCompression.deflate(new byte[1 << 20], 0);
+    assertEquals(1 << 20, AutoParseCompression.inflate(stored, (byte[]) null).length);
+    // A length that the deflated bytes can't reach is rejected before anything is allocated.
+    stored[5] = stored[6] = stored[7] = stored[8] = 0x7f;
+    try {
+      AutoParseCompression.inflate(stored, (byte[]) null);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+}
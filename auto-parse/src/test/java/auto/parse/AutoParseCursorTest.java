@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse;
+
+import com.parse.ParseClassName;
+import com.parse.ParseException;
+import com.parse.ParseObject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executor;
+import junit.framework.TestCase;
+
+public class AutoParseCursorTest extends TestCase {
+  @ParseClassName("Row")
+  public static class Row extends ParseObject {
+    private final String id;
+    private final Date createdAt;
+
+    public Row() {
+      this(null, 0);
+    }
+
+    Row(String id, long createdAt) {
+      this(id, new Date(createdAt));
+    }
+
+    Row(String id, Date createdAt) {
+      this.id = id;
+      this.createdAt = createdAt;
+    }
+
+    @Override public String getObjectId() {
+      return id;
+    }
+
+    @Override public Date getCreatedAt() {
+      return createdAt;
+    }
+  }
+
+  @Override
+  protected void setUp() {
+    ParseObject.registerSubclass(Row.class);
+  }
+
+  private static final Executor DIRECT = new Executor() {
+    @Override public void execute(Runnable command) {
+      command.run();
+    }
+  };
+
+  private static final AutoParseWrapper<String> IDS = new AutoParseWrapper<String>() {
+    @Override public String wrap(ParseObject parseObject) {
+      return parseObject.getObjectId();
+    }
+
+    @Override public ParseObject unwrap(String id) {
+      throw new UnsupportedOperationException();
+    }
+  };
+
+  // Serves rows sorted by (createdAt, objectId), as the server would for our query. Rows without a
+  // createdAt match every query, like unsaved objects in the local datastore.
+  private static class FakeLoader implements AutoParseCursor.PageLoader {
+    final List<Row> rows;
+    int loads;
+
+    FakeLoader(List<Row> rows) {
+      this.rows = rows;
+    }
+
+    @Override public List<? extends ParseObject> load(
+        Date lastCreatedAt, String lastObjectId, int limit) throws ParseException {
+      loads++;
+      List<Row> page = new ArrayList<Row>();
+      for (Row row : rows) {
+        if (page.size() == limit) {
+          break;
+        }
+        Date createdAt = row.getCreatedAt();
+        if (lastCreatedAt == null || createdAt == null || createdAt.after(lastCreatedAt)
+            || createdAt.equals(lastCreatedAt) && row.getObjectId().compareTo(lastObjectId) > 0) {
+          page.add(row);
+        }
+      }
+      return page;
+    }
+  }
+
+  private static List<String> drain(AutoParseCursor<String> cursor) {
+    List<String> ids = new ArrayList<String>();
+    for (String id : cursor) {
+      ids.add(id);
+    }
+    return ids;
+  }
+
+  public void testVisitsEveryRowOnce() {
+    List<Row> rows = new ArrayList<Row>();
+    List<String> expected = new ArrayList<String>();
+    for (int i = 0; i < 25; i++) {
+      // Several rows share each createdAt so that pages split ties.
+      String id = "id" + (100 + i);
+      rows.add(new Row(id, i / 4));
+      expected.add(id);
+    }
+    FakeLoader loader = new FakeLoader(rows);
+    AutoParseCursor<String> cursor = new AutoParseCursor<String>(loader, IDS, 3, DIRECT);
+    assertEquals(expected, drain(cursor));
+    assertEquals(9, loader.loads);
+  }
+
+  public void testManyRowsWithSameCreatedAt() {
+    List<Row> rows = new ArrayList<Row>();
+    for (int i = 0; i < 10; i++) {
+      rows.add(new Row("id" + i, 42));
+    }
+    AutoParseCursor<String> cursor =
+        new AutoParseCursor<String>(new FakeLoader(rows), IDS, 4, DIRECT);
+    assertEquals(10, drain(cursor).size());
+  }
+
+  public void testRowsWithoutCreatedAt() {
+    List<Row> rows = new ArrayList<Row>();
+    rows.add(new Row("unsaved", (Date) null));
+    for (int i = 0; i < 5; i++) {
+      rows.add(new Row("id" + i, i));
+    }
+    AutoParseCursor<String> cursor =
+        new AutoParseCursor<String>(new FakeLoader(rows), IDS, 4, DIRECT);
+    List<String> ids = drain(cursor);
+    assertEquals(Arrays.asList("unsaved", "id0", "id1", "id2", "unsaved", "id3", "id4"), ids);
+  }
+
+  public void testFullPageWithoutCreatedAt() {
+    List<Row> rows = new ArrayList<Row>();
+    for (int i = 0; i < 4; i++) {
+      rows.add(new Row("unsaved" + i, (Date) null));
+    }
+    AutoParseCursor<String> cursor =
+        new AutoParseCursor<String>(new FakeLoader(rows), IDS, 4, DIRECT);
+    for (int i = 0; i < 4; i++) {
+      assertEquals("unsaved" + i, cursor.next());
+    }
+    try {
+      cursor.hasNext();
+      fail();
+    } catch (AutoParseCursor.CursorException expected) {
+      assertTrue(expected.getCause() instanceof IllegalStateException);
+    }
+  }
+
+  public void testEmpty() {
+    AutoParseCursor<String> cursor =
+        new AutoParseCursor<String>(new FakeLoader(new ArrayList<Row>()), IDS, 4, DIRECT);
+    assertFalse(cursor.hasNext());
+  }
+
+  public void testFailureIsReported() {
+    AutoParseCursor<String> cursor = new AutoParseCursor<String>(new AutoParseCursor.PageLoader() {
+      @Override public List<? extends ParseObject> load(
+          Date lastCreatedAt, String lastObjectId, int limit) throws ParseException {
+        throw new ParseException(ParseException.OBJECT_NOT_FOUND, "gone");
+      }
+    }, IDS, 4, DIRECT);
+    try {
+      cursor.hasNext();
+      fail();
+    } catch (AutoParseCursor.CursorException expected) {
+      assertTrue(expected.getCause() instanceof ParseException);
+    }
+  }
+
+  public void testClose() {
+    List<Row> rows = new ArrayList<Row>();
+    for (int i = 0; i < 10; i++) {
+      rows.add(new Row("id" + i, i));
+    }
+    AutoParseCursor<String> cursor =
+        new AutoParseCursor<String>(new FakeLoader(rows), IDS, 4, DIRECT);
+    assertEquals("id0", cursor.next());
+    cursor.close();
+    assertFalse(cursor.hasNext());
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import junit.framework.TestCase;
+
+public class AutoParseDocumentTest extends TestCase {
+  // Stands in for a generated document class.
+  static class Prefs extends AutoParseDocument {
+    static int created;
+
+    static final Element<Prefs> ELEMENT = new Element<Prefs>() {
+      @Override public Prefs convert(Object stored) {
+        return stored instanceof Map ? new Prefs((Map<?, ?>) stored) : null;
+      }
+    };
+
+    Prefs(Map<?, ?> source) {
+      super(source);
+      created++;
+    }
+  }
+
+  private final Map<String, Object> stored = new HashMap<String, Object>();
+
+  @Override
+  protected void setUp() {
+    Prefs.created = 0;
+    stored.put("theme", "dark");
+    stored.put("fontSize", 14L);
+    stored.put("scale", 1.5);
+    stored.put("beta", true);
+    stored.put("tags", Arrays.asList("a", 2, null));
+  }
+
+  public void testReadsFields() {
+    Prefs prefs = AutoParseDocument.view(null, "prefs", stored, Prefs.ELEMENT);
+    assertSame(stored, prefs.source());
+    assertEquals("dark", prefs.getString("theme"));
+    assertEquals(14, prefs.getInt("fontSize"));
+    assertEquals(14L, prefs.getLong("fontSize"));
+    assertEquals(1.5, prefs.getDouble("scale"));
+    assertTrue(prefs.getBoolean("beta"));
+    assertNull(prefs.getString("fontSize"));
+    assertEquals(0, prefs.getInt("missing"));
+    assertFalse(prefs.getBoolean("theme"));
+    assertEquals(stored.toString(), prefs.toString());
+  }
+
+  public void testNotADocument() {
+    assertNull(AutoParseDocument.view(null, "prefs", "dark", Prefs.ELEMENT));
+    assertNull(AutoParseDocument.view(null, "prefs", null, Prefs.ELEMENT));
+    assertNull(AutoParseDocument.listOf(Prefs.ELEMENT).convert(stored));
+  }
+
+  public void testListConvertsLazilyAndOnce() {
+    List<Object> children = new ArrayList<Object>();
+    for (int i = 0; i < 3; i++) {
+      children.add(new HashMap<String, Object>());
+    }
+    children.add("not a document");
+    List<Prefs> list = AutoParseDocument.listOf(Prefs.ELEMENT).convert(children);
+    assertEquals(4, list.size());
+    assertEquals(0, Prefs.created);
+    Prefs first = list.get(0);
+    assertSame(first, list.get(0));
+    assertEquals(1, Prefs.created);
+    assertNull(list.get(3));
+    try {
+      list.add(first);
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+  }
+
+  public void testListOfValues() {
+    List<String> tags = AutoParseDocument.listOf(AutoParseDocument.STRINGS)
+        .convert(stored.get("tags"));
+    assertEquals(Arrays.asList("a", null, null), tags);
+    List<Long> numbers = AutoParseDocument.listOf(AutoParseDocument.LONGS)
+        .convert(Arrays.asList(1, 2.5, "3"));
+    assertEquals(Arrays.asList(1L, 2L, null), numbers);
+  }
+
+  public void testToStored() {
+    Prefs prefs = Prefs.ELEMENT.convert(stored);
+    assertSame(stored, AutoParseDocument.toStored(prefs));
+    List<Object> children = new ArrayList<Object>(Arrays.asList(stored));
+    List<Prefs> view = AutoParseDocument.listOf(Prefs.ELEMENT).convert(children);
+    assertSame(children, AutoParseDocument.toStored(view));
+    assertEquals(children, AutoParseDocument.toStored(Arrays.asList(prefs)));
+    assertEquals("dark", AutoParseDocument.toStored("dark"));
+    assertNull(AutoParseDocument.toStored(null));
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse;
+
+import junit.framework.TestCase;
+
+public class AutoParseEnumCodecTest extends TestCase {
+  enum Size { SMALL, MEDIUM, LARGE }
+
+  enum Level implements AutoParseEnumCode {
+    LOW(10), HIGH(20);
+
+    private final int code;
+
+    Level(int code) {
+      this.code = code;
+    }
+
+    @Override public int code() {
+      return code;
+    }
+  }
+
+  enum Sparse implements AutoParseEnumCode {
+    NEGATIVE(-5), BIG(1000000);
+
+    private final int code;
+
+    Sparse(int code) {
+      this.code = code;
+    }
+
+    @Override public int code() {
+      return code;
+    }
+  }
+
+  enum Clash implements AutoParseEnumCode {
+    A, B;
+
+    @Override public int code() {
+      return 1;
+    }
+  }
+
+  public void testStoredByName() {
+    AutoParseEnumCodec<Size> codec = AutoParseEnumCodec.of(Size.class);
+    assertEquals("MEDIUM", codec.encode(Size.MEDIUM));
+    assertNull(codec.encode(null));
+    for (Size size : Size.values()) {
+      assertSame(size, codec.decode(codec.encode(size), null));
+    }
+    // A name read back from the server is a different String instance.
+    assertSame(Size.LARGE, codec.decode(new String("LARGE"), Size.SMALL));
+  }
+
+  public void testInvalidValuesDecodeToDefault() {
+    AutoParseEnumCodec<Size> codec = AutoParseEnumCodec.of(Size.class);
+    assertSame(Size.SMALL, codec.decode(null, Size.SMALL));
+    assertSame(Size.SMALL, codec.decode("HUGE", Size.SMALL));
+    assertSame(Size.SMALL, codec.decode("medium", Size.SMALL));
+    assertSame(Size.SMALL, codec.decode(1, Size.SMALL));
+    assertNull(codec.decode(new Object(), null));
+  }
+
+  public void testStoredByCode() {
+    AutoParseEnumCodec<Level> codec = AutoParseEnumCodec.of(Level.class);
+    assertEquals(20, codec.encode(Level.HIGH));
+    assertSame(codec.encode(Level.HIGH), codec.encode(Level.HIGH));
+    assertSame(Level.LOW, codec.decode(10, null));
+    assertSame(Level.HIGH, codec.decode(20L, null));
+    assertSame(Level.HIGH, codec.decode(20.0, null));
+    // Objects saved by name before the enum had codes.
+    assertSame(Level.HIGH, codec.decode("HIGH", null));
+    assertSame(Level.LOW, codec.decode(15, Level.LOW));
+    assertSame(Level.LOW, codec.decode(20.5, Level.LOW));
+    assertSame(Level.LOW, codec.decode(-1, Level.LOW));
+    assertSame(Level.LOW, codec.decode(1L << 32 | 20, Level.LOW));
+  }
+
+  public void testSparseCodes() {
+    AutoParseEnumCodec<Sparse> codec = AutoParseEnumCodec.of(Sparse.class);
+    assertSame(Sparse.NEGATIVE, codec.decode(-5, null));
+    assertSame(Sparse.BIG, codec.decode(1000000, null));
+    assertNull(codec.decode(0, null));
+  }
+
+  public void testDuplicateCodes() {
+    try {
+      AutoParseEnumCodec.of(Clash.class);
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertTrue(expected.getMessage(), expected.getMessage().contains("code 1"));
+    }
+  }
+}
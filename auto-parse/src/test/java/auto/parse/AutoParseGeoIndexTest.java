@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse;
+
+import com.parse.ParseGeoPoint;
+import com.parse.ParseObject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import junit.framework.TestCase;
+
+public class AutoParseGeoIndexTest extends TestCase {
+  private static final double EARTH_RADIUS_KILOMETERS = 6371.0;
+
+  public void testPutMovesAndRemoves() {
+    AutoParseGeoIndex<String> index = new AutoParseGeoIndex<String>();
+    index.put("taipei", new ParseGeoPoint(25.03, 121.56));
+    index.put("tokyo", 35.68, 139.69);
+    assertEquals(2, index.size());
+    assertEquals(Arrays.asList("taipei"), index.withinKilometers(25, 121.5, 10));
+
+    index.put("taipei", 35.69, 139.70);
+    assertEquals(2, index.size());
+    assertTrue(index.withinKilometers(25, 121.5, 10).isEmpty());
+    assertEquals(new HashSet<String>(Arrays.asList("taipei", "tokyo")),
+        new HashSet<String>(index.withinKilometers(35.68, 139.69, 10)));
+
+    assertTrue(index.remove("tokyo"));
+    assertFalse(index.remove("tokyo"));
+    index.put("taipei", null);
+    assertEquals(0, index.size());
+    assertTrue(index.withinKilometers(35.68, 139.69, 10).isEmpty());
+  }
+
+  public void testObjectsAreToldApartByIdentity() {
+    AutoParseGeoIndex<String> index = new AutoParseGeoIndex<String>();
+    String first = new String("place");
+    String second = new String("place");
+    index.put(first, 10, 10);
+    index.put(second, 10, 10);
+    assertEquals(2, index.size());
+    assertEquals(2, index.withinGeoBox(9, 9, 11, 11).size());
+    assertNotSame(first, second);
+  }
+
+  public void testObjectsWithAnObjectIdShareAnEntry() {
+    AutoParseGeoIndex<ParseObject> index = new AutoParseGeoIndex<ParseObject>();
+    ParseObject fetched = ParseObject.createWithoutData("Place", "a");
+    ParseObject refetched = ParseObject.createWithoutData("Place", "a");
+    ParseObject unsaved = new ParseObject("Place");
+    index.putAll(Arrays.asList(fetched, unsaved),
+        Arrays.asList(new ParseGeoPoint(10, 10), new ParseGeoPoint(10, 10)));
+    index.put(refetched, 20, 20);
+    assertEquals(2, index.size());
+    assertEquals(Arrays.asList(refetched), index.withinGeoBox(19, 19, 21, 21));
+    // Once saved, the object moves to an entry under its objectId.
+    unsaved.setObjectId("b");
+    index.put(unsaved, 20, 20);
+    assertEquals(2, index.size());
+    assertTrue(index.withinGeoBox(9, 9, 11, 11).isEmpty());
+    assertTrue(index.remove(ParseObject.createWithoutData("Place", "b")));
+    assertEquals(1, index.size());
+  }
+
+  public void testObjectsAreHeldWeakly() throws InterruptedException {
+    AutoParseGeoIndex<String> index = new AutoParseGeoIndex<String>();
+    String kept = new String("kept");
+    index.put(kept, 10, 10);
+    index.put(new String("dropped"), 10, 10);
+    for (int i = 0; i < 20 && index.size() > 1; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertEquals(1, index.size());
+    assertEquals(Arrays.asList(kept), index.withinKilometers(10, 10, 1));
+  }
+
+  public void testWithinKilometersMatchesEveryDistance() {
+    Random random = new Random(42);
+    List<ParseGeoPoint> points = new ArrayList<ParseGeoPoint>();
+    AutoParseGeoIndex<ParseGeoPoint> index = new AutoParseGeoIndex<ParseGeoPoint>(1);
+    for (int i = 0; i < 5000; i++) {
+      ParseGeoPoint point =
+          new ParseGeoPoint(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+      points.add(point);
+      index.put(point, point);
+    }
+    double[] distances = {1, 50, 500, 3000, 25000};
+    for (int i = 0; i < 50; i++) {
+      ParseGeoPoint center = points.get(random.nextInt(points.size()));
+      double maxDistance = distances[i % distances.length];
+      Set<ParseGeoPoint> expected = new HashSet<ParseGeoPoint>();
+      for (ParseGeoPoint point : points) {
+        if (center.distanceInRadiansTo(point) * EARTH_RADIUS_KILOMETERS <= maxDistance) {
+          expected.add(point);
+        }
+      }
+      List<ParseGeoPoint> actual = index.withinKilometers(center, maxDistance);
+      assertEquals(expected.size(), actual.size());
+      assertEquals(expected, new HashSet<ParseGeoPoint>(actual));
+    }
+  }
+
+  public void testWithinKilometersAcrossTheAntimeridian() {
+    AutoParseGeoIndex<String> index = new AutoParseGeoIndex<String>();
+    index.put("east", -17.7, 179.95);
+    index.put("west", -17.7, -179.95);
+    index.put("far", -17.7, 178);
+    List<String> results = index.withinKilometers(-17.7, 180, 20);
+    Collections.sort(results);
+    assertEquals(Arrays.asList("east", "west"), results);
+  }
+
+  public void testWithinKilometersNearThePoles() {
+    AutoParseGeoIndex<String> index = new AutoParseGeoIndex<String>();
+    index.put("a", 89.9, 0);
+    index.put("b", 89.9, 180);
+    index.put("c", 89.9, -90);
+    index.put("d", 80, 0);
+    List<String> results = index.withinKilometers(90, 0, 50);
+    Collections.sort(results);
+    assertEquals(Arrays.asList("a", "b", "c"), results);
+    assertEquals(Arrays.asList("a"), index.withinKilometers(89.9, 10, 5));
+  }
+
+  public void testWithinGeoBox() {
+    AutoParseGeoIndex<String> index = new AutoParseGeoIndex<String>();
+    index.put("inside", 25, 121);
+    index.put("north", 26.5, 121);
+    index.put("east", 25, 123);
+    index.put("corner", 24, 120);
+    List<String> results = index.withinGeoBox(
+        new ParseGeoPoint(24, 120), new ParseGeoPoint(26, 122));
+    Collections.sort(results);
+    assertEquals(Arrays.asList("corner", "inside"), results);
+  }
+
+  public void testWithinGeoBoxAcrossTheAntimeridian() {
+    AutoParseGeoIndex<String> index = new AutoParseGeoIndex<String>();
+    index.put("fiji", -17.7, 178.1);
+    index.put("samoa", -13.8, -172.1);
+    index.put("sydney", -33.9, 151.2);
+    List<String> results = index.withinGeoBox(-20, 170, -10, -170);
+    Collections.sort(results);
+    assertEquals(Arrays.asList("fiji", "samoa"), results);
+  }
+
+  public void testInvalidArguments() {
+    AutoParseGeoIndex<String> index = new AutoParseGeoIndex<String>();
+    try {
+      new AutoParseGeoIndex<String>(0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      index.put("nowhere", 91, 0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      index.put("nowhere", 0, Double.NaN);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      index.put(null, 0, 0);
+      fail();
+    } catch (NullPointerException expected) {
+    }
+    try {
+      index.withinGeoBox(10, 0, 0, 10);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    assertEquals(0, index.size());
+  }
+}
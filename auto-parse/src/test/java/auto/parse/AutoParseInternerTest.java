@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import junit.framework.TestCase;
+
+public class AutoParseInternerTest extends TestCase {
+  public void testSharesEqualStrings() {
+    String taipei = new String("Taipei");
+    assertSame(taipei, AutoParseInterner.intern(taipei));
+    assertSame(taipei, AutoParseInterner.intern(new String("Taipei")));
+    assertSame(taipei, AutoParseInterner.intern(new StringBuilder("Tai").append("pei").toString()));
+    assertNull(AutoParseInterner.intern(null));
+  }
+
+  public void testUnusedStringsAreCollected() throws Exception {
+    int before = AutoParseInterner.size();
+    for (int i = 0; i < 1000; i++) {
+      AutoParseInterner.intern("unused-" + i);
+    }
+    for (int i = 0; i < 20 && AutoParseInterner.size() > before + 500; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertTrue(AutoParseInterner.size() <= before + 500);
+  }
+
+  public void testConcurrentCallersGetOneInstance() throws Exception {
+    final int threads = 8;
+    final CountDownLatch start = new CountDownLatch(1);
+    final String[][] results = new String[threads][100];
+    List<Thread> workers = new ArrayList<Thread>();
+    for (int t = 0; t < threads; t++) {
+      final int index = t;
+      Thread worker = new Thread() {
+        @Override public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          for (int i = 0; i < 100; i++) {
+            results[index][i] = AutoParseInterner.intern(new String("status-" + i));
+          }
+        }
+      };
+      worker.start();
+      workers.add(worker);
+    }
+    start.countDown();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    for (int i = 0; i < 100; i++) {
+      for (int t = 1; t < threads; t++) {
+        assertSame(results[0][i], results[t][i]);
+      }
+    }
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse;
+
+import com.parse.ParseObject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import junit.framework.TestCase;
+
+public class AutoParseListTest extends TestCase {
+  // Stands in for a generated class, which wraps the ParseObject that holds its data.
+  static class Friend {
+    final ParseObject parseObject;
+
+    Friend(ParseObject parseObject) {
+      this.parseObject = parseObject;
+    }
+  }
+
+  private int wraps;
+
+  private final AutoParseWrapper<Friend> wrapper = new AutoParseWrapper<Friend>() {
+    @Override public Friend wrap(ParseObject parseObject) {
+      wraps++;
+      return new Friend(parseObject);
+    }
+
+    @Override public ParseObject unwrap(Friend friend) {
+      return friend.parseObject;
+    }
+  };
+
+  private final ParseObject owner = new ParseObject("Person");
+  private final List<Object> stored = new ArrayList<Object>();
+
+  @Override
+  protected void setUp() {
+    for (int i = 0; i < 5; i++) {
+      stored.add(ParseObject.createWithoutData("Person", "p" + i));
+    }
+    owner.put("friends", stored);
+  }
+
+  private AutoParseList<Friend> view() {
+    return AutoParseList.view(owner, "friends", owner.get("friends"), wrapper);
+  }
+
+  public void testWrapsLazilyAndOnce() {
+    AutoParseList<Friend> friends = view();
+    assertEquals(5, friends.size());
+    assertEquals(0, wraps);
+    Friend first = friends.get(0);
+    assertSame(stored.get(0), first.parseObject);
+    assertSame(first, friends.get(0));
+    assertEquals(1, wraps);
+    for (int pass = 0; pass < 2; pass++) {
+      int i = 0;
+      for (Friend friend : friends) {
+        assertSame(stored.get(i++), friend.parseObject);
+      }
+    }
+    assertEquals(5, wraps);
+  }
+
+  private List<?> current() {
+    return (List<?>) owner.get("friends");
+  }
+
+  public void testChangesWriteThrough() {
+    List<Object> original = new ArrayList<Object>(stored);
+    AutoParseList<Friend> friends = view();
+    Friend added = new Friend(ParseObject.createWithoutData("Person", "new"));
+    friends.add(added);
+    assertSame(added.parseObject, current().get(5));
+    assertSame(added, friends.get(5));
+    Object first = current().get(0);
+    Object second = current().get(1);
+    assertSame(first, friends.set(0, added).parseObject);
+    assertSame(added.parseObject, current().get(0));
+    assertSame(second, friends.remove(1).parseObject);
+    assertEquals(5, current().size());
+    Iterator<Friend> iterator = friends.iterator();
+    iterator.next();
+    iterator.remove();
+    assertEquals(4, current().size());
+    friends.clear();
+    assertTrue(current().isEmpty());
+    // The list that the owner held at first is left as it was.
+    assertEquals(original, stored);
+  }
+
+  public void testBulkChanges() {
+    AutoParseList<Friend> friends = view();
+    List<Friend> added = new ArrayList<Friend>();
+    for (int i = 0; i < 3; i++) {
+      added.add(new Friend(ParseObject.createWithoutData("Person", "n" + i)));
+    }
+    assertTrue(friends.addAll(1, added));
+    assertFalse(friends.addAll(new ArrayList<Friend>()));
+    assertEquals(8, friends.size());
+    assertSame(added.get(0), friends.get(1));
+    assertSame(added.get(2).parseObject, current().get(3));
+    friends.subList(0, 4).clear();
+    assertEquals(4, current().size());
+    assertSame(stored.get(1), friends.get(0).parseObject);
+    assertEquals(5, stored.size());
+  }
+
+  public void testStoredListChangedElsewhere() {
+    AutoParseList<Friend> friends = view();
+    Friend first = friends.get(0);
+    stored.add(0, ParseObject.createWithoutData("Person", "elsewhere"));
+    assertSame(stored.get(0), friends.get(0).parseObject);
+    assertSame(first.parseObject, friends.get(1).parseObject);
+    stored.add(null);
+    assertNull(friends.get(6));
+  }
+
+  public void testToStored() {
+    assertSame(stored, AutoParseList.toStored(view(), wrapper));
+    List<Friend> empty = new ArrayList<Friend>();
+    assertSame(empty, AutoParseList.toStored(empty, wrapper));
+    ParseObject raw = (ParseObject) stored.get(0);
+    List<?> result = AutoParseList.toStored(Arrays.asList(new Friend(raw), null), wrapper);
+    assertEquals(Arrays.asList(raw, null), result);
+    assertNull(AutoParseList.toStored(null, wrapper));
+  }
+
+  public void testFetchAllIfNeeded() throws Exception {
+    stored.add(stored.get(0));
+    final List<List<ParseObject>> fetches = new ArrayList<List<ParseObject>>();
+    int fetched = view().fetchAllIfNeeded(new AutoParsePrefetcher.FetchOperation() {
+      @Override public void fetchAllIfNeeded(List<ParseObject> objects) {
+        fetches.add(objects);
+      }
+    });
+    assertEquals(5, fetched);
+    assertEquals(1, fetches.size());
+    assertEquals(0, wraps);
+  }
+
+  public void testNotAList() {
+    assertNull(AutoParseList.view(owner, "friends", null, wrapper));
+    assertNull(AutoParseList.view(owner, "friends", "p0", wrapper));
+  }
+}
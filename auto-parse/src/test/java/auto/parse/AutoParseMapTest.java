@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse;
+
+import com.parse.ParseObject;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import junit.framework.TestCase;
+
+public class AutoParseMapTest extends TestCase {
+  // Stands in for a generated class, which wraps the ParseObject that holds its data.
+  static class Place {
+    final ParseObject parseObject;
+
+    Place(ParseObject parseObject) {
+      this.parseObject = parseObject;
+    }
+  }
+
+  private int wraps;
+
+  private final AutoParseWrapper<Place> wrapper = new AutoParseWrapper<Place>() {
+    @Override public Place wrap(ParseObject parseObject) {
+      wraps++;
+      return new Place(parseObject);
+    }
+
+    @Override public ParseObject unwrap(Place place) {
+      return place.parseObject;
+    }
+  };
+
+  private final ParseObject owner = new ParseObject("Person");
+  private final Map<String, Object> stored = new HashMap<String, Object>();
+  private final ParseObject home = ParseObject.createWithoutData("Place", "h");
+  private final ParseObject work = ParseObject.createWithoutData("Place", "w");
+
+  @Override
+  protected void setUp() {
+    stored.put("home", home);
+    stored.put("work", work);
+    owner.put("places", stored);
+  }
+
+  private AutoParseMap<Place> view() {
+    return AutoParseMap.view(owner, "places", owner.get("places"), wrapper);
+  }
+
+  public void testWrapsLazilyAndOnce() {
+    AutoParseMap<Place> places = view();
+    assertEquals(2, places.size());
+    assertTrue(places.containsKey("home"));
+    assertEquals(0, wraps);
+    Place place = places.get("home");
+    assertSame(home, place.parseObject);
+    assertSame(place, places.get("home"));
+    assertEquals(1, wraps);
+    for (Map.Entry<String, Place> entry : places.entrySet()) {
+      assertSame(stored.get(entry.getKey()), entry.getValue().parseObject);
+    }
+    for (Place value : places.values()) {
+      assertNotNull(value);
+    }
+    assertEquals(2, wraps);
+    assertNull(places.get("missing"));
+  }
+
+  private Map<?, ?> current() {
+    return (Map<?, ?>) owner.get("places");
+  }
+
+  public void testPutWritesThrough() {
+    AutoParseMap<Place> places = view();
+    Place school = new Place(ParseObject.createWithoutData("Place", "s"));
+    assertNull(places.put("school", school));
+    assertSame(school.parseObject, current().get("school"));
+    assertSame(school, places.get("school"));
+    Place previous = places.put("home", school);
+    assertSame(home, previous.parseObject);
+    assertSame(school.parseObject, current().get("home"));
+    Map<String, Place> more = new HashMap<String, Place>();
+    more.put("gym", new Place(ParseObject.createWithoutData("Place", "g")));
+    more.put("work", null);
+    places.putAll(more);
+    assertEquals(4, current().size());
+    assertNull(places.get("work"));
+    // The map that the owner held at first is left as it was.
+    assertEquals(2, stored.size());
+    assertSame(home, stored.get("home"));
+  }
+
+  public void testRemoveWritesThrough() {
+    AutoParseMap<Place> places = view();
+    assertSame(home, places.remove("home").parseObject);
+    assertFalse(current().containsKey("home"));
+    assertNull(places.remove("home"));
+    Iterator<Map.Entry<String, Place>> entries = places.entrySet().iterator();
+    entries.next();
+    entries.remove();
+    assertTrue(current().isEmpty());
+    assertTrue(places.isEmpty());
+    assertEquals(2, stored.size());
+    places.put("home", new Place(home));
+    places.clear();
+    assertTrue(current().isEmpty());
+  }
+
+  public void testToStored() {
+    assertSame(stored, AutoParseMap.toStored(view(), wrapper));
+    Map<String, Place> unwrapped = new HashMap<String, Place>();
+    assertSame(unwrapped, AutoParseMap.toStored(unwrapped, wrapper));
+    Map<String, Place> wrapped = new HashMap<String, Place>();
+    wrapped.put("home", new Place(home));
+    wrapped.put("nowhere", null);
+    Map<String, ?> result = AutoParseMap.toStored(wrapped, wrapper);
+    assertSame(home, result.get("home"));
+    assertTrue(result.containsKey("nowhere"));
+    assertNull(AutoParseMap.toStored(null, wrapper));
+  }
+
+  public void testFetchAllIfNeeded() throws Exception {
+    stored.put("again", home);
+    final List<List<ParseObject>> fetches = new ArrayList<List<ParseObject>>();
+    int fetched = view().fetchAllIfNeeded(new AutoParsePrefetcher.FetchOperation() {
+      @Override public void fetchAllIfNeeded(List<ParseObject> objects) {
+        fetches.add(objects);
+      }
+    });
+    assertEquals(2, fetched);
+    assertEquals(1, fetches.size());
+    assertEquals(0, wraps);
+  }
+
+  public void testNotAMap() {
+    assertNull(AutoParseMap.view(owner, "places", null, wrapper));
+    assertNull(AutoParseMap.view(owner, "places", "home", wrapper));
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse;
+
+import com.parse.ParseObject;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.SortedMap;
+import junit.framework.TestCase;
+
+public class AutoParseMetricsTest extends TestCase {
+  public void testDisabledByDefault() {
+    assertFalse(AutoParseMetrics.ENABLED);
+    // The fallback ignores everything rather than failing.
+    AutoParseMetrics.get().onRead("Person", "name");
+  }
+
+  public void testLoad() {
+    assertTrue(AutoParseMetrics.load("true", "Dalvik") instanceof AutoParseMetrics.Counting);
+    assertTrue(AutoParseMetrics.load(AutoParseMetrics.Counting.class.getName(), "Dalvik")
+        instanceof AutoParseMetrics.Counting);
+    assertNull(AutoParseMetrics.load("false", "OpenJDK 64-Bit Server VM"));
+    // No service is registered on the test classpath, and Android doesn't look for one.
+    assertNull(AutoParseMetrics.load(null, "OpenJDK 64-Bit Server VM"));
+    assertNull(AutoParseMetrics.load(null, "Dalvik"));
+    try {
+      AutoParseMetrics.load("com.example.Missing", "Dalvik");
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  public void testCounting() {
+    AutoParseMetrics.Counting metrics = new AutoParseMetrics.Counting();
+    for (int i = 0; i < 3; i++) {
+      metrics.onRead("Person", "name");
+    }
+    metrics.onRead("Person", "id");
+    metrics.onWrite("Person", "name");
+    metrics.onSave(null, "Person", null, 10, 1000, 500, true);
+    metrics.onSave(null, "Person", null, 5, 200, 100, true);
+    metrics.onSave(null, null, null, 2, 30, 7, false);
+    metrics.onParcel(null, "Person", "a", true, 64, 3);
+    SortedMap<String, Long> snapshot = metrics.snapshot();
+    assertEquals(Long.valueOf(3), snapshot.get("read:Person.name"));
+    assertEquals(Long.valueOf(1), snapshot.get("read:Person.id"));
+    assertEquals(Long.valueOf(1), snapshot.get("write:Person.name"));
+    assertEquals(Long.valueOf(15), snapshot.get("save:Person.count"));
+    assertEquals(Long.valueOf(600), snapshot.get("save:Person.nanos"));
+    assertEquals(Long.valueOf(1200), snapshot.get("save:Person.bytes"));
+    assertEquals(Long.valueOf(2), snapshot.get("saveFailed:*.count"));
+    assertEquals(Long.valueOf(64), snapshot.get("parcelWrite:Person.bytes"));
+    assertEquals("parcelWrite:Person.bytes", snapshot.firstKey());
+    metrics.reset();
+    assertTrue(metrics.snapshot().isEmpty());
+  }
+
+  public void testStripedCounterSumsAcrossThreads() throws Exception {
+    final AutoParseMetrics.StripedCounter counter = new AutoParseMetrics.StripedCounter();
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread() {
+        @Override public void run() {
+          for (int j = 0; j < 10000; j++) {
+            counter.add(1);
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(80000, counter.sum());
+  }
+
+  public void testClassNameOf() {
+    ParseObject a = new ParseObject("A");
+    ParseObject b = new ParseObject("B");
+    assertEquals("A", AutoParseMetrics.classNameOf(Arrays.asList(a, a)));
+    assertNull(AutoParseMetrics.classNameOf(Arrays.asList(a, b)));
+    assertNull(AutoParseMetrics.classNameOf(Collections.<ParseObject>emptyList()));
+  }
+
+  public void testEstimateBytes() {
+    ParseObject person = new ParseObject("Person");
+    person.put("name", "Ada");
+    person.put("id", 1);
+    // [{"name":"Ada","id":1}]
+    assertEquals(25, AutoParseMetrics.estimateBytes(Collections.singletonList(person)));
+    person.put("photo", new byte[3000]);
+    person.put("friends", Arrays.asList(new ParseObject("Person"), new ParseObject("Person")));
+    int bytes = AutoParseMetrics.estimateBytes(Collections.singletonList(person));
+    // The photo is 4000 bytes of Base64, and the friends are pointers that are not followed.
+    assertTrue(String.valueOf(bytes), bytes > 4000 + 2 * 60 && bytes < 4500);
+  }
+}
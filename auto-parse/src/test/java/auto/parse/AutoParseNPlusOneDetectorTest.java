@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse;
+
+import com.parse.ParseClassName;
+import com.parse.ParseObject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+
+public class AutoParseNPlusOneDetectorTest extends TestCase {
+  private final List<AutoParseNPlusOneDetector.Report> reports =
+      new ArrayList<AutoParseNPlusOneDetector.Report>();
+
+  // Every instance equals every other and shares one hash code, like a model with a field-based
+  // equals whose fields are not loaded yet.
+  @ParseClassName("Comment")
+  public static class Comment extends ParseObject {
+    @Override public boolean equals(Object o) {
+      return o instanceof Comment;
+    }
+
+    @Override public int hashCode() {
+      return 1;
+    }
+  }
+
+  @Override
+  protected void setUp() {
+    ParseObject.registerSubclass(Comment.class);
+    AutoParseNPlusOneDetector.enable(5, 60000, new AutoParseNPlusOneDetector.Listener() {
+      @Override public void onNPlusOne(AutoParseNPlusOneDetector.Report report) {
+        reports.add(report);
+      }
+    });
+  }
+
+  @Override
+  protected void tearDown() {
+    AutoParseNPlusOneDetector.disable();
+  }
+
+  private static ParseObject post(Object author) {
+    ParseObject post = new ParseObject("Post");
+    post.put("author", author);
+    return post;
+  }
+
+  private void readAuthor(ParseObject post) {
+    AutoParseNPlusOneDetector.onRead(post, "author", post.get("author"));
+  }
+
+  public void testReportsOnceAtThreshold() {
+    for (int i = 0; i < 8; i++) {
+      readAuthor(post(ParseObject.createWithoutData("User", "u" + i)));
+    }
+    assertEquals(1, reports.size());
+    AutoParseNPlusOneDetector.Report report = reports.get(0);
+    assertEquals("Post", report.getClassName());
+    assertEquals("author", report.getProperty());
+    assertEquals(5, report.getCount());
+    assertEquals(getClass().getName(), report.getStackTrace()[0].getClassName());
+    assertEquals("readAuthor", report.getStackTrace()[0].getMethodName());
+    assertEquals("testReportsOnceAtThreshold", report.getCallSite().getMethodName());
+  }
+
+  public void testSameObjectCountsOnce() {
+    ParseObject post = post(ParseObject.createWithoutData("User", "u"));
+    for (int i = 0; i < 20; i++) {
+      readAuthor(post);
+    }
+    assertTrue(reports.isEmpty());
+  }
+
+  public void testEqualObjectsCountSeparately() {
+    for (int i = 0; i < 5; i++) {
+      Comment comment = new Comment();
+      comment.put("author", ParseObject.createWithoutData("User", "u" + i));
+      readAuthor(comment);
+    }
+    assertEquals(1, reports.size());
+  }
+
+  public void testFetchedPointersAreIgnored() {
+    for (int i = 0; i < 20; i++) {
+      readAuthor(post(new ParseObject("User")));
+      readAuthor(post(null));
+    }
+    assertTrue(reports.isEmpty());
+  }
+
+  public void testListsOfPointers() {
+    for (int i = 0; i < 5; i++) {
+      ParseObject post = new ParseObject("Post");
+      post.put("tags", Arrays.asList(
+          new ParseObject("Tag"), ParseObject.createWithoutData("Tag", "t")));
+      AutoParseNPlusOneDetector.onRead(post, "tags", post.get("tags"));
+    }
+    assertEquals(1, reports.size());
+    assertEquals("tags", reports.get(0).getProperty());
+  }
+
+  public void testDisabled() {
+    AutoParseNPlusOneDetector.disable();
+    assertFalse(AutoParseNPlusOneDetector.isEnabled());
+    for (int i = 0; i < 20; i++) {
+      readAuthor(post(ParseObject.createWithoutData("User", "u" + i)));
+    }
+    assertTrue(reports.isEmpty());
+  }
+}
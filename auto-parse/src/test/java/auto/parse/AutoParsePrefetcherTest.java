@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse;
+
+import com.parse.ParseObject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import junit.framework.TestCase;
+
+public class AutoParsePrefetcherTest extends TestCase {
+  private final List<List<ParseObject>> fetches = new ArrayList<List<ParseObject>>();
+
+  private final AutoParsePrefetcher.FetchOperation recorder =
+      new AutoParsePrefetcher.FetchOperation() {
+        @Override public void fetchAllIfNeeded(List<ParseObject> objects) {
+          fetches.add(objects);
+        }
+      };
+
+  public void testOneFetchPerClass() throws Exception {
+    List<ParseObject> posts = new ArrayList<ParseObject>();
+    Map<String, ParseObject> places = new HashMap<String, ParseObject>();
+    for (int i = 0; i < 10; i++) {
+      ParseObject post = new ParseObject("Post");
+      post.put("author", ParseObject.createWithoutData("User", "u" + i));
+      post.put("tags", Arrays.asList(ParseObject.createWithoutData("Tag", "t" + i),
+          ParseObject.createWithoutData("Tag", "x")));
+      ParseObject place = ParseObject.createWithoutData("Place", "p" + (i % 3));
+      places.put("p" + (i % 3), place);
+      post.put("places", places);
+      posts.add(post);
+    }
+    int fetched = AutoParsePrefetcher.fetchPointers(
+        posts, new String[] {"author", "tags", "places", "missing"}, recorder);
+    assertEquals(3, fetches.size());
+    assertEquals("User", fetches.get(0).get(0).getClassName());
+    assertEquals(10, fetches.get(0).size());
+    // Every "x" tag is a distinct instance, so all of them are fetched.
+    assertEquals(20, fetches.get(1).size());
+    assertEquals(3, fetches.get(2).size());
+    assertEquals(33, fetched);
+  }
+
+  public void testSkipsAvailableAndRepeatedPointers() throws Exception {
+    ParseObject shared = ParseObject.createWithoutData("User", "u");
+    ParseObject a = new ParseObject("Post");
+    a.put("author", shared);
+    a.put("editor", new ParseObject("User"));
+    ParseObject b = new ParseObject("Post");
+    b.put("author", shared);
+    AutoParsePrefetcher.fetchPointers(
+        Arrays.asList(a, b, null), new String[] {"author", "editor"}, recorder);
+    assertEquals(1, fetches.size());
+    assertEquals(Arrays.asList(shared), fetches.get(0));
+  }
+
+  public void testNothingToFetch() throws Exception {
+    ParseObject post = new ParseObject("Post");
+    post.put("title", "hello");
+    assertEquals(0, AutoParsePrefetcher.fetchPointers(
+        Arrays.asList(post), new String[] {"title"}, recorder));
+    assertTrue(fetches.isEmpty());
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2015 8tory, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package auto.parse;
+
+import com.parse.ParseException;
+import com.parse.ParseObject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+public class AutoParseSaveSchedulerTest extends TestCase {
+  private final List<List<ParseObject>> batches =
+      Collections.synchronizedList(new ArrayList<List<ParseObject>>());
+  private final List<ParseObject> savedEventually =
+      Collections.synchronizedList(new ArrayList<ParseObject>());
+  private volatile RuntimeException saveFailure;
+
+  private AutoParseSaveScheduler newScheduler(long windowMillis, int maxBatchSize) {
+    return new AutoParseSaveScheduler(windowMillis, maxBatchSize,
+        AutoParseSaveScheduler.newSchedulerThread(), true,
+        new AutoParseSaveScheduler.SaveOperation() {
+          @Override public void saveAll(List<ParseObject> objects) {
+            if (saveFailure != null) {
+              throw saveFailure;
+            }
+            batches.add(objects);
+          }
+
+          @Override public void saveEventually(ParseObject object) {
+            savedEventually.add(object);
+          }
+        });
+  }
+
+  public void testCoalescesRepeatedSavesWithinWindow() throws Exception {
+    AutoParseSaveScheduler scheduler = newScheduler(60000, 100);
+    ParseObject a = ParseObject.createWithoutData("Foo", "a");
+    ParseObject b = ParseObject.createWithoutData("Foo", "b");
+    for (int i = 0; i < 10; i++) {
+      scheduler.enqueue(a);
+      scheduler.enqueue(b);
+    }
+    assertEquals(2, scheduler.getMetrics().getPending());
+    scheduler.shutdown();
+    assertTrue(scheduler.awaitTermination(10, TimeUnit.SECONDS));
+    assertEquals(1, batches.size());
+    assertEquals(2, batches.get(0).size());
+    AutoParseSaveScheduler.Metrics metrics = scheduler.getMetrics();
+    assertEquals(20, metrics.getEnqueued());
+    assertEquals(18, metrics.getCoalesced());
+    assertEquals(1, metrics.getFlushes());
+    assertEquals(2, metrics.getSaved());
+    assertEquals(0, metrics.getPending());
+  }
+
+  public void testFlushesWhenBatchIsFull() throws Exception {
+    AutoParseSaveScheduler scheduler = newScheduler(60000, 3);
+    for (int i = 0; i < 7; i++) {
+      scheduler.enqueue(ParseObject.createWithoutData("Foo", "id" + i));
+    }
+    scheduler.shutdown();
+    assertTrue(scheduler.awaitTermination(10, TimeUnit.SECONDS));
+    int total = 0;
+    for (List<ParseObject> batch : batches) {
+      assertTrue(batch.size() <= 3);
+      total += batch.size();
+    }
+    assertEquals(7, total);
+    assertEquals(3, batches.size());
+  }
+
+  public void testFlushesAfterWindow() throws Exception {
+    AutoParseSaveScheduler scheduler = newScheduler(10, 100);
+    scheduler.enqueue(ParseObject.createWithoutData("Foo", "a"));
+    long deadline = System.currentTimeMillis() + 10000;
+    while (batches.isEmpty() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+    assertEquals(1, batches.size());
+    scheduler.shutdown();
+  }
+
+  public void testRuntimeExceptionFallsBackToSaveEventually() throws Exception {
+    saveFailure = new IllegalStateException("boom");
+    final List<Throwable> causes = Collections.synchronizedList(new ArrayList<Throwable>());
+    AutoParseSaveScheduler scheduler = newScheduler(60000, 100);
+    scheduler.setListener(new AutoParseSaveScheduler.Listener() {
+      @Override public void onFlushed(List<ParseObject> objects) {
+        fail();
+      }
+
+      @Override public void onFlushFailed(List<ParseObject> objects, ParseException e) {
+        causes.add(e.getCause());
+      }
+    });
+    ParseObject a = ParseObject.createWithoutData("Foo", "a");
+    ParseObject b = ParseObject.createWithoutData("Foo", "b");
+    scheduler.enqueue(a);
+    scheduler.enqueue(b);
+    scheduler.shutdown();
+    assertTrue(scheduler.awaitTermination(10, TimeUnit.SECONDS));
+    assertEquals(Arrays.asList(a, b), savedEventually);
+    assertEquals(Collections.<Throwable>singletonList(saveFailure), causes);
+    assertEquals(2, scheduler.getMetrics().getFailed());
+  }
+
+  public void testFlushAfterShutdownDoesNothing() throws Exception {
+    AutoParseSaveScheduler scheduler = newScheduler(10, 100);
+    scheduler.shutdown();
+    assertTrue(scheduler.awaitTermination(10, TimeUnit.SECONDS));
+    scheduler.flush();
+    assertTrue(batches.isEmpty());
+  }
+
+  public void testRejectsAfterShutdown() throws Exception {
+    AutoParseSaveScheduler scheduler = newScheduler(10, 100);
+    scheduler.shutdown();
+    try {
+      scheduler.enqueue(ParseObject.createWithoutData("Foo", "a"));
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+}
@@ -7,6 +7,7 @@ import android.os.Parcelable;
 public abstract class Address extends com.parse.ParseObject implements Parcelable {
   public abstract byte[] getCoordinates();
   public abstract Address setCoordinates(byte[] coordinates);
+  @AutoParse.Interned
   public abstract String getCityName();
   public abstract Address setCityName(String name);
 
@@ -7,16 +7,11 @@ import java.util.Map;
 import model1.HeightBucket;
 import model2.Address;
 
-@AutoParse
+@AutoParse(prefetch = "*")
 public abstract class Person extends com.parse.ParseObject implements Parcelable {
-  //public static Person create(String name, long id, HeightBucket heightType, Map<String, Address> addresses,
-  //    List<Person> friends) {
-  //  return new AutoParse_Person(name, id, heightType, addresses, friends);
-  //}
-
-  public static Person create(String name, Long id, Map<String, Address> addresses,
-      List<Person> friends) {
-    return new AutoParse_Person(name, id, addresses, friends);
+  public static Person create(String name, Long id, HeightBucket heightType,
+      Map<String, Address> addresses, List<Person> friends) {
+    return new AutoParse_Person(name, id, heightType, addresses, friends);
   }
 
   public static Person create() {
@@ -31,7 +26,8 @@ public abstract class Person extends com.parse.ParseObject implements Parcelable
   public abstract Person setName(String name);
   public abstract Long getId();
   public abstract Person setId(Long id);
-  //public abstract HeightBucket heightType();
+  public abstract HeightBucket getHeightType();
+  public abstract Person setHeightType(HeightBucket heightType);
   public abstract Map<String, Address> getAddresses();
   public abstract Person setAddresses(Map<String, Address> addresses);
   public abstract List<Person> getFriends();